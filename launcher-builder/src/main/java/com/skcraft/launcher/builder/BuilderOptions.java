@@ -19,6 +19,7 @@ public class BuilderOptions {
     public static final String DEFAULT_VERSION_FILENAME = "version.json";
     public static final String DEFAULT_SRC_DIRNAME = "src";
     public static final String DEFAULT_LOADERS_DIRNAME = "loaders";
+    public static final String DEFAULT_BUILD_CACHE_FILENAME = ".build_cache.json";
 
     // Configuration
 
@@ -35,6 +36,8 @@ public class BuilderOptions {
     private String version;
     @Parameter(names = "--manifest-dest", required = true)
     private File manifestPath;
+    @Parameter(names = "--previous-manifest")
+    private File previousManifestPath;
 
     // Overall paths
     @Parameter(names = {"--input", "-i"})
@@ -57,6 +60,10 @@ public class BuilderOptions {
     private File objectsDir;
     @Parameter(names = "--libraries-dest")
     private File librariesDir;
+    @Parameter(names = "--asset-packs-dest")
+    private File assetPacksDir;
+    @Parameter(names = "--build-cache")
+    private File buildCachePath;
 
     @Parameter(names = "--libs-url")
     private String librariesLocation = "libraries";
@@ -97,6 +104,18 @@ public class BuilderOptions {
             requireOutputPath("--libs-dest");
             librariesDir = new File(outputPath, librariesLocation);
         }
+
+        // The manifest being replaced is the previous version to write a delta from
+        if (previousManifestPath == null) {
+            previousManifestPath = manifestPath;
+        }
+
+        // The output directory gets uploaded, so keep the cache of local paths with the input instead
+        if (buildCachePath == null) {
+            buildCachePath = inputPath != null
+                    ? new File(inputPath, DEFAULT_BUILD_CACHE_FILENAME)
+                    : new File(DEFAULT_BUILD_CACHE_FILENAME);
+        }
     }
 
     private void requireOutputPath(String name) throws ParameterException {
@@ -9,19 +9,22 @@ package com.skcraft.launcher.builder;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
+import com.skcraft.launcher.install.FileIndex;
 import com.skcraft.launcher.model.modpack.FileInstall;
 import com.skcraft.launcher.model.modpack.Manifest;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.java.Log;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.*;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  * Walks a path and adds hashed path versions to the given
@@ -36,6 +39,8 @@ public class ClientFileCollector extends DirectoryWalker {
     private final PropertiesApplicator applicator;
     private final File destDir;
     private HashFunction hf = Hashing.sha1();
+    @Setter
+    private FileIndex buildCache;
 
     /**
      * Create a new collector.
@@ -64,10 +69,19 @@ public class ClientFileCollector extends DirectoryWalker {
     }
 
     private final ArrayList<FileEntry> fileEntries = new ArrayList<>();
+    private final ArrayList<FileEntry> urlTargets = new ArrayList<>();
 
     @Override
     protected void onFile(File file, String relPath) throws IOException {
-        if (file.getName().endsWith(FileInfoScanner.FILE_SUFFIX) || file.getName().endsWith(URL_FILE_SUFFIX)) {
+        if (file.getName().endsWith(URL_FILE_SUFFIX)) {
+            // The target may only be downloaded during this walk, after its directory was listed
+            int length = URL_FILE_SUFFIX.length();
+            String name = file.getName().substring(0, file.getName().length() - length);
+            urlTargets.add(new FileEntry(new File(file.getParentFile(), name),
+                    relPath.substring(0, relPath.length() - length)));
+            return;
+        }
+        if (file.getName().endsWith(FileInfoScanner.FILE_SUFFIX)) {
             return;
         }
         fileEntries.add(new FileEntry(file, relPath));
@@ -75,23 +89,47 @@ public class ClientFileCollector extends DirectoryWalker {
 
     @Override
     protected void onWalkComplete() {
+        Set<FileEntry> found = new HashSet<FileEntry>(fileEntries);
+        for (FileEntry target : urlTargets) {
+            if (!found.contains(target) && target.file.isFile()) {
+                fileEntries.add(target);
+            }
+        }
+        urlTargets.clear();
+
         long start = System.currentTimeMillis();
-        fileEntries.parallelStream().forEach(fileEntry -> {
+        List<FileInstall> entries = fileEntries.parallelStream().map(fileEntry -> {
             try {
-                addFile(fileEntry.file, fileEntry.relPath);
+                return createEntry(fileEntry.file, fileEntry.relPath);
             } catch (IOException e) {
                 log.log(Level.SEVERE, "Error processing file.", e);
                 throw new RuntimeException(e);
             }
-        });
+        }).collect(Collectors.toList());
+
+        // Files finish hashing in any order, so sort them to build the same manifest from the same files
+        Collections.sort(entries, Comparator.comparing(FileInstall::getTo));
+        manifest.getTasks().addAll(entries);
         long stop = System.currentTimeMillis();
         log.info("Finished processing " + fileEntries.size() + " files in " + (stop - start) + "ms.");
+
+        if (buildCache != null) {
+            // Don't keep the hashes of files that were removed from the pack
+            Set<String> paths = new HashSet<String>();
+            for (FileEntry fileEntry : fileEntries) {
+                paths.add(fileEntry.file.getAbsolutePath());
+            }
+            buildCache.retainAll(paths);
+        }
+
         fileEntries.clear();
     }
 
-    private void addFile(File file, String relPath) throws IOException {
+    private FileInstall createEntry(File file, String relPath) throws IOException {
         FileInstall entry = new FileInstall();
-        String hash = Files.hash(file, hf).toString();
+        String hash = buildCache != null
+                ? buildCache.getHash(file.getAbsolutePath(), file)
+                : Files.hash(file, hf).toString();
         String to = FilenameUtils.separatorsToUnix(FilenameUtils.normalize(relPath));
 
         // url.txt override file
@@ -113,10 +151,11 @@ public class ClientFileCollector extends DirectoryWalker {
         applicator.apply(entry);
         destPath.getParentFile().mkdirs();
         ClientFileCollector.log.info(String.format("Adding %s from %s...", relPath, file.getAbsolutePath()));
-        if (copy) {
+        // Objects are named by their hash, so an object of the right size is already the right file
+        if (copy && !(destPath.isFile() && destPath.length() == file.length())) {
             Files.copy(file, destPath);
         }
-        manifest.getTasks().add(entry);
+        return entry;
     }
 
     public static DirectoryBehavior getDirectoryBehavior(@NonNull String name) {
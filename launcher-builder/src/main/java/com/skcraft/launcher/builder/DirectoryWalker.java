@@ -11,15 +11,36 @@ import lombok.extern.java.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Abstract class to recursively walk a directory, keep track of a relative
  * path (which may be modified by dropping certain directory entries),
  * and call {@link #onFile(java.io.File, String)} with each file.
+ * <p>
+ * Directories are listed in parallel, but {@link #onFile(java.io.File, String)}
+ * is called from one thread, in the order of the files' paths. Several
+ * walkers can share one walk with {@link #walk(File, DirectoryWalker...)}.
  */
 @Log
 public abstract class DirectoryWalker {
 
+    /**
+     * Listing directories mostly waits on the file system, so use more
+     * threads than there are processors.
+     */
+    private static final int PARALLELISM = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+
     public enum DirectoryBehavior {
         /**
          * Continue and add the given directory to the relative path.
@@ -42,49 +63,62 @@ public abstract class DirectoryWalker {
      * @throws IOException thrown on I/O error
      */
     public final void walk(@NonNull File dir) throws IOException {
-        long start = System.currentTimeMillis();
-        walk(dir, "");
-        long stop = System.currentTimeMillis();
-        log.info("Directory walk complete in " + (stop - start) + "ms.");
-        this.onWalkComplete();
+        walk(dir, this);
     }
 
     /**
-     * Recursively walk the given directory and keep track of the relative path.
+     * Walk the given directory once for several walkers. Each walker sees
+     * the files that it would have seen walking the directory by itself,
+     * with its own relative paths. Once every file has been visited, the
+     * walkers' {@link #onWalkComplete()} are called in the given order.
      *
-     * @param dir      the directory
-     * @param basePath the base path
-     * @throws IOException
+     * @param dir     the directory
+     * @param walkers the walkers
+     * @throws IOException thrown on I/O error
      */
-    private void walk(@NonNull File dir, @NonNull String basePath) throws IOException {
+    public static void walk(@NonNull File dir, @NonNull DirectoryWalker... walkers) throws IOException {
         if (!dir.isDirectory()) {
             throw new IllegalArgumentException(dir.getAbsolutePath() + " is not a directory");
         }
 
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    String newPath = basePath;
-
-                    switch (getBehavior(file.getName())) {
-                        case CONTINUE:
-                            newPath += file.getName() + "/";
-                        case IGNORE:
-                            walk(file, newPath);
-                            break;
-                        case SKIP:
-                            break;
-                    }
-                } else {
-                    onFile(file, basePath + file.getName());
+        long start = System.currentTimeMillis();
+
+        String[] basePaths = new String[walkers.length];
+        for (int i = 0; i < walkers.length; i++) {
+            basePaths[i] = "";
+        }
+
+        List<Visit> visits;
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            visits = pool.invoke(new WalkTask(dir.toPath(), basePaths, walkers));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+
+        Collections.sort(visits, Comparator.comparing(visit -> visit.file.getPath()));
+
+        for (Visit visit : visits) {
+            for (int i = 0; i < walkers.length; i++) {
+                if (visit.relPaths[i] != null) {
+                    walkers[i].onFile(visit.file, visit.relPaths[i]);
                 }
             }
         }
+
+        long stop = System.currentTimeMillis();
+        log.info("Directory walk of " + visits.size() + " files complete in " + (stop - start) + "ms.");
+
+        for (DirectoryWalker walker : walkers) {
+            walker.onWalkComplete();
+        }
     }
 
     /**
-     * Return the behavior for the given directory name.
+     * Return the behavior for the given directory name. This may be called
+     * from several threads at once.
      *
      * @param name the directory name
      * @return the behavior
@@ -109,5 +143,104 @@ public abstract class DirectoryWalker {
     protected void onWalkComplete() {
     }
 
-    ;
+    /**
+     * A file found by a walk, with its relative path for each walker, or
+     * null for the walkers that don't see it.
+     */
+    private static class Visit {
+        private final File file;
+        private final String[] relPaths;
+
+        private Visit(File file, String[] relPaths) {
+            this.file = file;
+            this.relPaths = relPaths;
+        }
+    }
+
+    /**
+     * Lists one directory and forks a task for each directory in it that
+     * at least one walker goes into.
+     */
+    private static class WalkTask extends RecursiveTask<List<Visit>> {
+        private final Path dir;
+        private final String[] basePaths;
+        private final DirectoryWalker[] walkers;
+
+        private WalkTask(Path dir, String[] basePaths, DirectoryWalker[] walkers) {
+            this.dir = dir;
+            this.basePaths = basePaths;
+            this.walkers = walkers;
+        }
+
+        @Override
+        protected List<Visit> compute() {
+            List<Visit> visits = new ArrayList<Visit>();
+            List<WalkTask> subtasks = new ArrayList<WalkTask>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    boolean directory;
+                    try {
+                        directory = Files.readAttributes(path, BasicFileAttributes.class).isDirectory();
+                    } catch (IOException e) {
+                        // Such as a broken link, which is treated as a file like File.isDirectory() would
+                        directory = false;
+                    }
+
+                    if (directory) {
+                        WalkTask subtask = createSubtask(path, name);
+                        if (subtask != null) {
+                            subtasks.add(subtask);
+                        }
+                    } else {
+                        String[] relPaths = new String[basePaths.length];
+                        for (int i = 0; i < basePaths.length; i++) {
+                            if (basePaths[i] != null) {
+                                relPaths[i] = basePaths[i] + name;
+                            }
+                        }
+                        visits.add(new Visit(path.toFile(), relPaths));
+                    }
+                }
+            } catch (IOException e) {
+                // Carrying on would leave the whole directory out of the pack
+                throw new UncheckedIOException("Failed to list " + dir, e);
+            }
+
+            invokeAll(subtasks);
+            for (WalkTask subtask : subtasks) {
+                visits.addAll(subtask.join());
+            }
+
+            return visits;
+        }
+
+        private WalkTask createSubtask(Path path, String name) {
+            String[] paths = new String[basePaths.length];
+            boolean entered = false;
+
+            for (int i = 0; i < basePaths.length; i++) {
+                if (basePaths[i] == null) {
+                    continue;
+                }
+
+                switch (walkers[i].getBehavior(name)) {
+                    case CONTINUE:
+                        paths[i] = basePaths[i] + name + "/";
+                        entered = true;
+                        break;
+                    case IGNORE:
+                        paths[i] = basePaths[i];
+                        entered = true;
+                        break;
+                    case SKIP:
+                        break;
+                }
+            }
+
+            return entered ? new WalkTask(path, paths, walkers) : null;
+        }
+    }
+
 }
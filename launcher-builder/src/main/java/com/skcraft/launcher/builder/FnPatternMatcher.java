@@ -0,0 +1,145 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.builder;
+
+import lombok.NonNull;
+
+import java.util.*;
+
+/**
+ * Matches a path against many {@link FnMatch} patterns at once.
+ * <p>
+ * Patterns are kept in a trie by the literal text that they start with,
+ * so a path is only checked against the patterns whose literal start it
+ * shares, and against the patterns that start with a wildcard. Those
+ * patterns are then checked with {@link FnMatch} itself, so the flags
+ * mean exactly what they mean there.
+ *
+ * @param <T> the type of the value that each pattern is added with
+ */
+public class FnPatternMatcher<T> {
+
+    private final Node<T> exactRoot = new Node<T>();
+    private final Node<T> caseFoldedRoot = new Node<T>();
+    private int count;
+
+    /**
+     * Add a pattern.
+     *
+     * @param pattern the pattern
+     * @param flags   the flags to match the pattern with
+     * @param value   the value to return when the pattern matches
+     */
+    public void add(@NonNull String pattern, @NonNull EnumSet<FnMatch.Flag> flags, T value) {
+        boolean caseFold = flags.contains(FnMatch.Flag.CASEFOLD);
+        boolean escape = !flags.contains(FnMatch.Flag.NOESCAPE);
+        Node<T> node = caseFold ? caseFoldedRoot : exactRoot;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || (c == '\\' && escape)) {
+                break;
+            }
+            node = node.getOrCreateChild(caseFold ? Character.toLowerCase(c) : c);
+        }
+
+        node.entries.add(new Entry<T>(pattern, EnumSet.copyOf(flags), value, count++));
+    }
+
+    /**
+     * Find the values of every pattern that matches a path, in the order
+     * that the patterns were added.
+     *
+     * @param path the path
+     * @param out  the collection to add the values to
+     */
+    public void match(@NonNull String path, Collection<? super T> out) {
+        List<Entry<T>> candidates = new ArrayList<Entry<T>>();
+        collect(exactRoot, path, false, candidates);
+        collect(caseFoldedRoot, path, true, candidates);
+
+        if (candidates.size() > 1) {
+            Collections.sort(candidates);
+        }
+
+        for (Entry<T> entry : candidates) {
+            if (FnMatch.fnmatch(entry.pattern, path, entry.flags)) {
+                out.add(entry.value);
+            }
+        }
+    }
+
+    /**
+     * Check whether any pattern matches a path.
+     *
+     * @param path the path
+     * @return true if a pattern matches
+     */
+    public boolean matches(@NonNull String path) {
+        List<Entry<T>> candidates = new ArrayList<Entry<T>>();
+        collect(exactRoot, path, false, candidates);
+        collect(caseFoldedRoot, path, true, candidates);
+
+        for (Entry<T> entry : candidates) {
+            if (FnMatch.fnmatch(entry.pattern, path, entry.flags)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static <T> void collect(Node<T> node, String path, boolean caseFold, List<Entry<T>> out) {
+        out.addAll(node.entries);
+
+        for (int i = 0; i < path.length() && node.children != null; i++) {
+            char c = path.charAt(i);
+            node = node.children.get(caseFold ? Character.toLowerCase(c) : c);
+            if (node == null) {
+                break;
+            }
+            out.addAll(node.entries);
+        }
+    }
+
+    private static class Node<T> {
+        private Map<Character, Node<T>> children;
+        private final List<Entry<T>> entries = new ArrayList<Entry<T>>(0);
+
+        private Node<T> getOrCreateChild(char c) {
+            if (children == null) {
+                children = new HashMap<Character, Node<T>>();
+            }
+            Node<T> child = children.get(c);
+            if (child == null) {
+                child = new Node<T>();
+                children.put(c, child);
+            }
+            return child;
+        }
+    }
+
+    private static class Entry<T> implements Comparable<Entry<T>> {
+        private final String pattern;
+        private final EnumSet<FnMatch.Flag> flags;
+        private final T value;
+        private final int order;
+
+        private Entry(String pattern, EnumSet<FnMatch.Flag> flags, T value, int order) {
+            this.pattern = pattern;
+            this.flags = flags;
+            this.value = value;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry<T> o) {
+            return Integer.compare(order, o.order);
+        }
+    }
+
+}
@@ -10,22 +10,31 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
 import com.google.common.io.Files;
 import com.skcraft.launcher.Launcher;
 import com.skcraft.launcher.LauncherUtils;
+import com.skcraft.launcher.install.FileIndex;
 import com.skcraft.launcher.builder.loaders.*;
 import com.skcraft.launcher.model.loader.BasicInstallProfile;
+import com.skcraft.launcher.model.minecraft.Asset;
+import com.skcraft.launcher.model.minecraft.AssetsIndex;
 import com.skcraft.launcher.model.minecraft.Library;
 import com.skcraft.launcher.model.minecraft.ReleaseList;
 import com.skcraft.launcher.model.minecraft.Version;
 import com.skcraft.launcher.model.minecraft.VersionManifest;
 import com.skcraft.launcher.model.modpack.Manifest;
+import com.skcraft.launcher.model.modpack.ManifestDelta;
 import com.skcraft.launcher.util.HttpRequest;
 import com.skcraft.launcher.util.SimpleLogFormatter;
 import lombok.Getter;
@@ -35,13 +44,11 @@ import lombok.extern.java.Log;
 
 import java.io.*;
 import java.net.URL;
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Properties;
+import java.util.*;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.emptyToNull;
@@ -63,6 +70,9 @@ public class PackageBuilder {
     @Getter
     @Setter
     private File baseDir;
+    @Getter
+    @Setter
+    private File buildCachePath;
 
     private List<Library> loaderLibraries = Lists.newArrayList();
     private List<Library> installerLibraries = Lists.newArrayList();
@@ -99,28 +109,68 @@ public class PackageBuilder {
         } else {
             writer = mapper.writer();
         }
+        // Keep map keys in a stable order so the same pack always writes the same manifest
+        writer = writer.with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
         this.prettyPrint = prettyPrint;
     }
 
-    public void scan(File dir) throws IOException {
-        logSection("Scanning for .info.json files...");
+    public void addFiles(File dir, File destDir) throws IOException {
+        logSection("Scanning for .info.json and .url.txt files and adding files to modpack...");
+
+        FileInfoScanner infoScanner = new FileInfoScanner(mapper) {
+            @Override
+            protected void onWalkComplete() {
+                // Features have to be known before the collector applies them to its files
+                for (FeaturePattern pattern : getPatterns()) {
+                    applicator.register(pattern);
+                }
+            }
+        };
+        FileUrlScanner urlScanner = new FileUrlScanner();
+        ClientFileCollector collector = new ClientFileCollector(this.manifest, applicator, destDir);
+        FileIndex buildCache = readBuildCache();
+        collector.setBuildCache(buildCache);
+
+        // One walk for all three, with each seeing a file before the next one does
+        DirectoryWalker.walk(dir, infoScanner, urlScanner, collector);
+        writeBuildCache(buildCache);
+    }
+
+    /**
+     * Read the hashes of the files from the last build, so that files that
+     * have not changed since don't have to be hashed again.
+     *
+     * @return the cache, or null if there is no build cache path
+     */
+    private FileIndex readBuildCache() {
+        if (buildCachePath == null) {
+            return null;
+        }
 
-        FileInfoScanner infoScanner = new FileInfoScanner(mapper);
-        infoScanner.walk(dir);
-        for (FeaturePattern pattern : infoScanner.getPatterns()) {
-            applicator.register(pattern);
+        if (buildCachePath.exists()) {
+            try {
+                FileIndex cache = mapper.readValue(buildCachePath, FileIndex.class);
+                log.info("Using the build cache at " + buildCachePath.getAbsolutePath());
+                return cache;
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to read the build cache at " + buildCachePath.getAbsolutePath(), e);
+            }
         }
 
-        logSection("Scanning for .url.txt files...");
-        FileUrlScanner urlScanner = new FileUrlScanner();
-        urlScanner.walk(dir);
+        return new FileIndex();
     }
 
-    public void addFiles(File dir, File destDir) throws IOException {
-        logSection("Adding files to modpack...");
+    private void writeBuildCache(FileIndex buildCache) {
+        if (buildCache == null) {
+            return;
+        }
 
-        ClientFileCollector collector = new ClientFileCollector(this.manifest, applicator, destDir);
-        collector.walk(dir);
+        try {
+            buildCachePath.getAbsoluteFile().getParentFile().mkdirs();
+            mapper.writeValue(buildCachePath, buildCache);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to write the build cache to " + buildCachePath.getAbsolutePath(), e);
+        }
     }
 
     public void addLoaders(File dir, File librariesDir) {
@@ -313,6 +363,96 @@ public class PackageBuilder {
         closer.close();
     }
 
+    /**
+     * Build the asset pack for the version's asset index, which the launcher
+     * can download instead of fetching every asset on its own. An existing
+     * pack is only reused if it was built from the same asset index.
+     *
+     * @param dir the directory to write packs to
+     * @throws IOException          thrown on I/O error
+     * @throws InterruptedException on interruption
+     */
+    public void buildAssetPack(File dir) throws IOException, InterruptedException {
+        logSection("Building asset pack...");
+
+        VersionManifest versionManifest = manifest.getVersionManifest();
+        if (versionManifest.getAssetIndex() == null) {
+            log.warning("The version manifest has no asset index, so no asset pack was built");
+            return;
+        }
+
+        String indexId = versionManifest.getAssetId();
+        File packFile = new File(dir, indexId + ".zip");
+        File packHashFile = new File(dir, indexId + ".zip.index_sha1");
+
+        byte[] indexData = HttpRequest.get(url(versionManifest.getAssetIndex().getUrl()))
+                .execute()
+                .expectResponseCode(200)
+                .returnContent()
+                .asBytes();
+        String indexHash = Hashing.sha1().hashBytes(indexData).toString();
+
+        // Asset index IDs are reused when Mojang changes an index, so only trust a pack made from the same index
+        if (packFile.exists() && packHashFile.exists()
+                && indexHash.equals(Files.asCharSource(packHashFile, Charsets.UTF_8).read().trim())) {
+            log.info("Asset pack " + packFile.getAbsolutePath() + " is up to date");
+            return;
+        }
+
+        AssetsIndex index = mapper.readValue(indexData, AssetsIndex.class);
+
+        URL source = url(properties.getProperty("assetsSource"));
+        Set<String> added = new HashSet<String>();
+        File tempFile = new File(dir, indexId + ".zip.tmp");
+        dir.mkdirs();
+
+        Closer closer = Closer.create();
+        boolean written = false;
+        try {
+            ZipOutputStream zos = closer.register(new ZipOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile))));
+
+            for (Asset asset : index.getObjects().values()) {
+                String path = asset.getHash().substring(0, 2) + "/" + asset.getHash();
+                if (!added.add(path)) {
+                    continue;
+                }
+
+                log.info("Adding asset " + path + " to the asset pack...");
+                URL url = LauncherUtils.concat(source, path);
+                byte[] data = HttpRequest.get(url)
+                        .execute()
+                        .expectResponseCode(200)
+                        .returnContent()
+                        .asBytes();
+
+                String actualHash = Hashing.sha1().hashBytes(data).toString();
+                if (!actualHash.equalsIgnoreCase(asset.getHash())) {
+                    throw new IOException(String.format("Asset downloaded from %s is corrupt (invalid hash)\n" +
+                            "Expected '%s'\nGot '%s'", url, asset.getHash(), actualHash));
+                }
+
+                zos.putNextEntry(new ZipEntry(path));
+                zos.write(data);
+                zos.closeEntry();
+            }
+            written = true;
+        } finally {
+            closer.close();
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+
+        packFile.delete();
+        if (!tempFile.renameTo(packFile)) {
+            throw new IOException("Failed to move " + tempFile.getAbsolutePath() + " to " + packFile.getAbsolutePath());
+        }
+        Files.asCharSink(packHashFile, Charsets.UTF_8).write(indexHash);
+
+        log.info("Wrote asset pack with " + added.size() + " assets to " + packFile.getAbsolutePath());
+    }
+
     public void validateManifest() {
         checkNotNull(emptyToNull(manifest.getName()), "Package name is not defined");
         checkNotNull(emptyToNull(manifest.getGameVersion()), "Game version is not defined");
@@ -371,6 +511,60 @@ public class PackageBuilder {
         log.info("Wrote manifest to " + path.getAbsolutePath());
     }
 
+    /**
+     * Read the manifest of the previous version of the pack, to later
+     * write a delta from.
+     *
+     * @param path the path of the previous manifest, which may not exist
+     * @return the manifest, or null if there is none
+     */
+    public ObjectNode readPreviousManifest(File path) {
+        if (path == null || !path.isFile()) {
+            return null;
+        }
+
+        try {
+            JsonNode node = mapper.readTree(path);
+            return node instanceof ObjectNode ? (ObjectNode) node : null;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to read the previous manifest at " + path.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the delta from the previous manifest to the manifest that was
+     * written, next to the manifest, so that launchers that have the
+     * previous version installed only have to download what changed.
+     *
+     * @param previous the previous manifest, or null if there is none
+     * @param path     the path of the manifest that was written
+     * @throws IOException thrown on I/O error
+     */
+    public void writeManifestDelta(ObjectNode previous, @NonNull File path) throws IOException {
+        logSection("Writing manifest delta...");
+
+        File deltaPath = new File(path.getAbsoluteFile().getParentFile(), ManifestDelta.getDeltaName(path.getName()));
+        ObjectNode current = (ObjectNode) mapper.readTree(path);
+        String previousVersion = previous != null ? previous.path("version").asText(null) : null;
+
+        if (previousVersion == null || previousVersion.equals(current.path("version").asText(null))) {
+            // Launchers check the versions of a delta, but don't leave one around that can't be used
+            if (deltaPath.delete()) {
+                log.info("Removed the old manifest delta at " + deltaPath.getAbsolutePath());
+            }
+            log.info("There is no previous version of the manifest to write a delta from");
+            return;
+        }
+
+        ManifestDelta delta = ManifestDelta.create(previous, current);
+        writer.writeValue(deltaPath, delta);
+
+        log.info("Wrote manifest delta from " + delta.getBaseVersion() + " to " + delta.getVersion() + " with " +
+                delta.getFiles().size() + " changed and " + delta.getRemoved().size() + " removed file(s) to " +
+                deltaPath.getAbsolutePath());
+    }
+
     private static BuilderOptions parseArgs(String[] args) {
         BuilderOptions options = new BuilderOptions();
         new JCommander(options).parse(args);
@@ -424,6 +618,7 @@ public class PackageBuilder {
         builder.readConfig(options.getConfigPath());
         builder.readVersionManifest(options.getVersionManifestPath());
         builder.setBaseDir(options.getOutputPath());
+        builder.setBuildCachePath(options.getBuildCachePath());
 
         // From options
         manifest.updateName(options.getName());
@@ -433,11 +628,15 @@ public class PackageBuilder {
         manifest.setLibrariesLocation(options.getLibrariesLocation());
         manifest.setObjectsLocation(options.getObjectsLocation());
 
-        builder.scan(options.getFilesDir());
         builder.addFiles(options.getFilesDir(), options.getObjectsDir());
         builder.addLoaders(options.getLoadersDir(), options.getLibrariesDir());
         builder.downloadLibraries(options.getLibrariesDir());
+        if (options.getAssetPacksDir() != null) {
+            builder.buildAssetPack(options.getAssetPacksDir());
+        }
+        ObjectNode previousManifest = builder.readPreviousManifest(options.getPreviousManifestPath());
         builder.writeManifest(options.getManifestPath());
+        builder.writeManifestDelta(previousManifest, options.getManifestPath());
 
         logSection("Done");
 
@@ -8,21 +8,18 @@ package com.skcraft.launcher.builder;
 
 import com.skcraft.launcher.model.modpack.*;
 import lombok.Getter;
-import lombok.Setter;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PropertiesApplicator {
 
     private final Manifest manifest;
-    private final Set<Feature> used = new HashSet<Feature>();
+    private final Set<Feature> used = ConcurrentHashMap.newKeySet();
     private final List<FeaturePattern> features = new ArrayList<FeaturePattern>();
     @Getter
-    @Setter
     private FnPatternList userFiles;
+    private CompiledPatterns compiled;
 
     public PropertiesApplicator(Manifest manifest) {
         this.manifest = manifest;
@@ -41,35 +38,117 @@ public class PropertiesApplicator {
     }
 
     public boolean isUserFile(String path) {
-        if (userFiles != null) {
-            return userFiles.matches(path);
-        } else {
-            return false;
-        }
+        return getCompiled().isUserFile(path);
     }
 
     public Condition fromFeature(String path) {
-        List<Feature> found = new ArrayList<Feature>();
-        for (FeaturePattern pattern : features) {
-            if (pattern.matches(path)) {
-                used.add(pattern.getFeature());
-                found.add(pattern.getFeature());
-            }
-        }
+        List<Feature> found = getCompiled().getFeatures(path);
 
         if (!found.isEmpty()) {
+            used.addAll(found);
             return new RequireAny(found);
         } else {
             return null;
         }
     }
 
-    public void register(FeaturePattern component) {
+    public synchronized void register(FeaturePattern component) {
         features.add(component);
+        compiled = null;
+    }
+
+    public synchronized void setUserFiles(FnPatternList userFiles) {
+        this.userFiles = userFiles;
+        compiled = null;
+    }
+
+    /**
+     * Get the features that matched at least one file, in the order that
+     * they were registered.
+     *
+     * @return the features
+     */
+    public synchronized List<Feature> getFeaturesInUse() {
+        Set<Feature> features = new LinkedHashSet<Feature>();
+        for (FeaturePattern pattern : this.features) {
+            if (used.contains(pattern.getFeature())) {
+                features.add(pattern.getFeature());
+            }
+        }
+        return new ArrayList<Feature>(features);
     }
 
-    public List<Feature> getFeaturesInUse() {
-        return new ArrayList<Feature>(used);
+    /**
+     * Get the patterns compiled for matching, compiling them the first time
+     * after patterns are registered.
+     *
+     * @return the compiled patterns
+     */
+    private synchronized CompiledPatterns getCompiled() {
+        if (compiled == null) {
+            compiled = new CompiledPatterns(features, userFiles);
+        }
+        return compiled;
+    }
+
+    /**
+     * All the patterns of the registered features and the user files, so
+     * that a path can be matched against all of them in one pass.
+     */
+    private static class CompiledPatterns {
+        private final List<FeaturePattern> features;
+        private final FnPatternMatcher<Integer> featureIncludes = new FnPatternMatcher<Integer>();
+        private final FnPatternMatcher<Integer> featureExcludes = new FnPatternMatcher<Integer>();
+        private final FnPatternMatcher<Boolean> userFileIncludes = new FnPatternMatcher<Boolean>();
+        private final FnPatternMatcher<Boolean> userFileExcludes = new FnPatternMatcher<Boolean>();
+        private final boolean hasUserFiles;
+
+        private CompiledPatterns(List<FeaturePattern> features, FnPatternList userFiles) {
+            this.features = new ArrayList<FeaturePattern>(features);
+
+            for (int i = 0; i < this.features.size(); i++) {
+                FnPatternList patterns = this.features.get(i).getFilePatterns();
+                if (patterns != null) {
+                    add(featureIncludes, patterns.getInclude(), patterns, i);
+                    add(featureExcludes, patterns.getExclude(), patterns, i);
+                }
+            }
+
+            hasUserFiles = userFiles != null && userFiles.getInclude() != null;
+            if (hasUserFiles) {
+                add(userFileIncludes, userFiles.getInclude(), userFiles, true);
+                add(userFileExcludes, userFiles.getExclude(), userFiles, true);
+            }
+        }
+
+        private static <T> void add(FnPatternMatcher<T> matcher, List<String> patterns, FnPatternList list, T value) {
+            if (patterns != null) {
+                for (String pattern : patterns) {
+                    matcher.add(pattern, list.getFlags(), value);
+                }
+            }
+        }
+
+        private List<Feature> getFeatures(String path) {
+            SortedSet<Integer> matched = new TreeSet<Integer>();
+            featureIncludes.match(path, matched);
+
+            List<Feature> found = new ArrayList<Feature>();
+            if (!matched.isEmpty()) {
+                Set<Integer> excluded = new HashSet<Integer>();
+                featureExcludes.match(path, excluded);
+                for (Integer index : matched) {
+                    if (!excluded.contains(index)) {
+                        found.add(features.get(index).getFeature());
+                    }
+                }
+            }
+            return found;
+        }
+
+        private boolean isUserFile(String path) {
+            return hasUserFiles && userFileIncludes.matches(path) && !userFileExcludes.matches(path);
+        }
     }
 
 }
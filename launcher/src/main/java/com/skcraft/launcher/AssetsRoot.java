@@ -6,24 +6,30 @@
 
 package com.skcraft.launcher;
 
+import com.google.common.hash.Hashing;
 import com.skcraft.concurrency.ProgressObservable;
 import com.skcraft.launcher.model.minecraft.Asset;
 import com.skcraft.launcher.model.minecraft.AssetsIndex;
 import com.skcraft.launcher.model.minecraft.VersionManifest;
 import com.skcraft.launcher.persistence.Persistence;
+import com.skcraft.launcher.util.Metrics;
+import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.java.Log;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import static com.skcraft.launcher.util.SharedLocale.tr;
@@ -86,36 +92,114 @@ public class AssetsRoot {
         if (index == null || index.getObjects() == null) {
             throw new LauncherException("Missing index at " + path, tr("assets.missingIndex", path.getAbsolutePath()));
         }
+        String indexHash;
+        try {
+            indexHash = com.google.common.io.Files.hash(path, Hashing.sha1()).toString();
+        } catch (IOException e) {
+            throw new LauncherException(e, tr("assets.missingIndex", path.getAbsolutePath()));
+        }
         File treeDir = new File(dir, "virtual/" + indexId);
         treeDir.mkdirs();
-        return new AssetsTreeBuilder(index, treeDir);
+        return new AssetsTreeBuilder(index, indexHash, treeDir, new File(dir, "virtual/" + indexId + ".tree.json"));
+    }
+
+    /**
+     * Records the contents of a completely built virtual assets tree.
+     */
+    @Data
+    public static class TreeManifest {
+        private String indexHash;
+        private Map<String, String> objects = new HashMap<String, String>();
     }
 
     public class AssetsTreeBuilder implements ProgressObservable {
         private final AssetsIndex index;
+        private final String indexHash;
         private final File destDir;
+        private final File manifestPath;
         private final int count;
-        private int processed = 0;
+        private final AtomicInteger processed = new AtomicInteger();
+        @Setter
+        @NonNull
+        private Metrics metrics = new Metrics("assets");
 
-        public AssetsTreeBuilder(AssetsIndex index, File destDir) {
+        public AssetsTreeBuilder(AssetsIndex index, String indexHash, File destDir, File manifestPath) {
             this.index = index;
+            this.indexHash = indexHash;
             this.destDir = destDir;
+            this.manifestPath = manifestPath;
             count = index.getObjects().size();
         }
 
+        /**
+         * Build the tree, only touching the files that changed since the
+         * tree was last built.
+         *
+         * @return the directory of the tree
+         * @throws IOException       on I/O error
+         * @throws LauncherException on an error
+         */
         public File build() throws IOException, LauncherException {
+            TreeManifest previous = Persistence.read(manifestPath, TreeManifest.class, true);
+            String[] existing = destDir.list();
+            if (existing == null || existing.length == 0) {
+                // The tree was removed, so the manifest says nothing about it
+                previous = null;
+            }
+
+            if (previous != null && indexHash.equals(previous.getIndexHash())) {
+                AssetsRoot.log.info("Asset virtual tree at '" + destDir.getAbsolutePath() + "' is up to date");
+                metrics.count("assets.unchanged", count);
+                processed.set(count);
+                return destDir;
+            }
+
             AssetsRoot.log.info("Building asset virtual tree at '" + destDir.getAbsolutePath() + "'...");
 
+            Map<String, String> previousObjects = previous != null
+                    ? previous.getObjects() : Collections.<String, String>emptyMap();
+            TreeManifest current = new TreeManifest();
+            current.setIndexHash(indexHash);
+            for (Map.Entry<String, Asset> entry : index.getObjects().entrySet()) {
+                current.getObjects().put(entry.getKey(), entry.getValue().getHash());
+            }
+
+            // Remove files that are no longer part of the index
+            for (String name : previousObjects.keySet()) {
+                if (!current.getObjects().containsKey(name)) {
+                    new File(destDir, name).delete();
+                    metrics.count("assets.removed");
+                }
+            }
+
             AtomicBoolean supportsLinks = new AtomicBoolean(true);
+            AtomicBoolean failed = new AtomicBoolean();
+            Set<File> createdDirs = ConcurrentHashMap.newKeySet();
             int threadCount = Runtime.getRuntime().availableProcessors();
             ExecutorService executor = Executors.newFixedThreadPool(threadCount);
 
             for (Map.Entry<String, Asset> entry : index.getObjects().entrySet()) {
+                String previousHash = previousObjects.get(entry.getKey());
+                if (entry.getValue().getHash().equals(previousHash)) {
+                    metrics.count("assets.unchanged");
+                    processed.incrementAndGet();
+                    continue;
+                }
+
                 executor.submit(() -> {
                     try {
                         File objectPath = getObjectPath(entry.getValue());
                         File virtualPath = new File(destDir, entry.getKey());
-                        virtualPath.getParentFile().mkdirs();
+                        File parentDir = virtualPath.getParentFile();
+                        if (createdDirs.add(parentDir)) {
+                            parentDir.mkdirs();
+                        }
+
+                        if (previousHash != null) {
+                            // The object for this name changed
+                            virtualPath.delete();
+                        }
+
                         if (!virtualPath.exists()) {
                             log.log(Level.INFO, "Copying {0} to {1}...", new Object[]{
                                     objectPath.getAbsolutePath(), virtualPath.getAbsolutePath()});
@@ -128,6 +212,7 @@ public class AssetsRoot {
                             if (supportsLinks.get()) {
                                 try {
                                     Files.createLink(virtualPath.toPath(), objectPath.toPath());
+                                    metrics.count("assets.linked");
                                 } catch (UnsupportedOperationException e) {
                                     supportsLinks.set(false);
                                 }
@@ -135,10 +220,12 @@ public class AssetsRoot {
 
                             if (!supportsLinks.get()) {
                                 Files.copy(objectPath.toPath(), virtualPath.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                                metrics.count("assets.copied");
                             }
                         }
-                        processed++;
+                        processed.incrementAndGet();
                     } catch (IOException | LauncherException e) {
+                        failed.set(true);
                         e.printStackTrace();
                     }
                 });
@@ -149,6 +236,14 @@ public class AssetsRoot {
                 executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
             } catch (InterruptedException e) {
                 e.printStackTrace();
+                failed.set(true);
+            }
+
+            // Only remember complete trees, so that failed objects are tried again next time
+            if (!failed.get()) {
+                Persistence.write(manifestPath, current);
+            } else {
+                manifestPath.delete();
             }
 
             return destDir;
@@ -159,16 +254,16 @@ public class AssetsRoot {
             if (count == 0) {
                 return -1;
             } else {
-                return processed / (double) count;
+                return processed.get() / (double) count;
             }
         }
 
         @Override
         public String getStatus() {
             if (count == 0) {
-                return tr("assets.expanding1", count, count - processed);
+                return tr("assets.expanding1", count, count - processed.get());
             } else {
-                return tr("assets.expandingN", count, count - processed);
+                return tr("assets.expandingN", count, count - processed.get());
             }
         }
     }
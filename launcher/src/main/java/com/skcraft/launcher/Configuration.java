@@ -29,6 +29,8 @@ public class Configuration {
     private int minMemory = 1024;
     private int maxMemory = 0; // Updated in Launcher
     private int permGen = 256;
+    private boolean automaticMemory = false;
+    private boolean classDataSharing = false;
     private int windowWidth = 854;
     private int windowHeight = 480;
     private boolean proxyEnabled = false;
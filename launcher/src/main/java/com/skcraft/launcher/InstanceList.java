@@ -12,6 +12,7 @@ import com.skcraft.launcher.model.modpack.PackageList;
 import com.skcraft.launcher.persistence.Persistence;
 import com.skcraft.launcher.util.HttpRequest;
 import com.skcraft.launcher.util.SharedLocale;
+import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.java.Log;
@@ -60,6 +61,21 @@ public class InstanceList {
         return instances.get(index);
     }
 
+    /**
+     * Get the instance with the given name.
+     *
+     * @param name the name
+     * @return the instance, or null if there is no instance with the name
+     */
+    public synchronized Instance get(String name) {
+        for (Instance instance : instances) {
+            if (instance.getName().equals(name)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
     /**
      * Get the number of instances.
      *
@@ -69,6 +85,83 @@ public class InstanceList {
         return instances.size();
     }
 
+    /**
+     * Get the path of the snapshot of the last enumerated list of instances.
+     *
+     * @return the path
+     */
+    private File getSnapshotPath() {
+        return new File(launcher.getBaseDir(), "instances_cache.json");
+    }
+
+    /**
+     * Load the instances that were enumerated the last time, so that they
+     * can be shown before the remote list of packages has been downloaded.
+     * The list is left alone if there is no snapshot.
+     *
+     * @return true if instances were loaded
+     */
+    public boolean loadSnapshot() {
+        Snapshot snapshot = Persistence.read(getSnapshotPath(), Snapshot.class, true);
+        if (snapshot == null || snapshot.getInstances().isEmpty()) {
+            return false;
+        }
+
+        List<Instance> loaded = new ArrayList<Instance>();
+        for (SnapshotEntry entry : snapshot.getInstances()) {
+            try {
+                File dir = new File(launcher.getInstancesDir(), entry.getName());
+                Instance instance = Persistence.load(new File(dir, "instance.json"), Instance.class);
+                instance.setDir(dir);
+                instance.setName(entry.getName());
+                instance.setTitle(entry.getTitle());
+                instance.setPriority(entry.getPriority());
+                instance.setSelected(entry.isLocal());
+                instance.setLocal(entry.isLocal());
+                if (entry.getManifestURL() != null) {
+                    instance.setManifestURL(new URL(entry.getManifestURL()));
+                }
+                if (!entry.isLocal()) {
+                    instance.setVersion(entry.getVersion());
+                    instance.setUpdatePending(true);
+                }
+                loaded.add(instance);
+            } catch (Exception e) {
+                log.log(Level.WARNING, "Error loading cached instance " + entry.getName(), e);
+            }
+        }
+
+        synchronized (this) {
+            instances.clear();
+            instances.addAll(loaded);
+        }
+
+        log.info(loaded.size() + " instance(s) loaded from the cached list.");
+        return !loaded.isEmpty();
+    }
+
+    private synchronized void saveSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        for (Instance instance : instances) {
+            SnapshotEntry entry = new SnapshotEntry();
+            entry.setName(instance.getName());
+            entry.setTitle(instance.getTitle());
+            entry.setVersion(instance.getVersion());
+            entry.setPriority(instance.getPriority());
+            entry.setLocal(instance.isLocal());
+            if (instance.getManifestURL() != null) {
+                entry.setManifestURL(instance.getManifestURL().toString());
+            }
+            snapshot.getInstances().add(entry);
+        }
+
+        try {
+            Persistence.write(getSnapshotPath(), snapshot);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to save the cached list of instances", e);
+        }
+    }
+
     /**
      * Create a worker that loads the list of instances from disk and from
      * the remote list of packages.
@@ -115,6 +208,7 @@ public class InstanceList {
 
             List<Instance> local = Collections.synchronizedList(new ArrayList<>());
             List<Instance> remote = Collections.synchronizedList(new ArrayList<>());
+            boolean complete = false;
 
             // Loading local instances
             File[] dirs = launcher.getInstancesDir().listFiles((FileFilter) DirectoryFileFilter.INSTANCE);
@@ -198,6 +292,8 @@ public class InstanceList {
                         }
                     }
                 });
+
+                complete = true;
             } catch (IOException e) {
                 throw new IOException("The list of modpacks could not be downloaded.", e);
             } finally {
@@ -207,6 +303,11 @@ public class InstanceList {
                     instances.addAll(remote);
                     log.info(instances.size() + " instance(s) enumerated.");
                 }
+
+                // Only a list that includes the remote packages is worth showing next time
+                if (complete) {
+                    saveSnapshot();
+                }
             }
 
             return InstanceList.this;
@@ -223,4 +324,22 @@ public class InstanceList {
             return progress.getStatus();
         }
     }
+
+    /**
+     * The list of instances saved by {@link #saveSnapshot()}.
+     */
+    @Data
+    public static class Snapshot {
+        private List<SnapshotEntry> instances = new ArrayList<SnapshotEntry>();
+    }
+
+    @Data
+    public static class SnapshotEntry {
+        private String name;
+        private String title;
+        private String version;
+        private int priority;
+        private boolean local;
+        private String manifestURL;
+    }
 }
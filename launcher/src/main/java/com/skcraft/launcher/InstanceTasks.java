@@ -63,4 +63,20 @@ public class InstanceTasks {
         return future;
     }
 
+    /**
+     * Reload the list of instances in the background, without showing
+     * progress, for when a cached list of instances is already shown.
+     *
+     * @param window the window to show errors over
+     * @return the future
+     */
+    public ObservableFuture<InstanceList> refreshInstances(Window window) {
+        InstanceList.Enumerator loader = launcher.getInstances().createEnumerator();
+        ObservableFuture<InstanceList> future = new ObservableFuture<InstanceList>(launcher.getExecutor().submit(loader), loader);
+
+        SwingHelper.addErrorDialogCallback(window, future);
+
+        return future;
+    }
+
 }
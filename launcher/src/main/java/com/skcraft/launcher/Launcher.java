@@ -16,7 +16,10 @@ import com.skcraft.launcher.auth.AccountList;
 import com.skcraft.launcher.auth.LoginService;
 import com.skcraft.launcher.auth.MicrosoftLoginService;
 import com.skcraft.launcher.auth.UserType;
+import com.skcraft.launcher.install.ObjectStore;
 import com.skcraft.launcher.launch.LaunchSupervisor;
+import com.skcraft.launcher.launch.NativesCache;
+import com.skcraft.launcher.launch.runtime.JavaRuntimeFinder;
 import com.skcraft.launcher.model.minecraft.Library;
 import com.skcraft.launcher.model.minecraft.VersionManifest;
 import com.skcraft.launcher.persistence.Persistence;
@@ -74,10 +77,17 @@ public final class Launcher {
     @Getter
     private final AssetsRoot assets;
     @Getter
+    private final ObjectStore objectStore;
+    @Getter
+    private final NativesCache nativesCache;
+    @Getter
     private final LaunchSupervisor launchSupervisor = new LaunchSupervisor(this);
     @Getter
     private final InstanceTasks instanceTasks = new InstanceTasks(this);
+    @Getter
+    private final Metrics startupMetrics = new Metrics("startup");
     private final Environment env = Environment.getInstance();
+    private boolean startupReported;
 
     /**
      * Create a new launcher instance with the given base directory.
@@ -104,19 +114,40 @@ public final class Launcher {
         this.properties = LauncherUtils.loadProperties(Launcher.class, "launcher.properties", "com.skcraft.launcher.propertiesFile");
         this.instances = new InstanceList(this);
         this.assets = new AssetsRoot(new File(baseDir, "assets"));
+        this.objectStore = new ObjectStore(new File(baseDir, "objects"));
+        this.nativesCache = new NativesCache(new File(baseDir, "natives"));
 
-        CompletableFuture<Void> loadConfigAndAccounts = CompletableFuture.runAsync(() -> {
-            this.config = Persistence.load(new File(configDir, "config.json"), Configuration.class);
-            this.accounts = Persistence.load(new File(configDir, "accounts.dat"), AccountList.class);
+        // Load the found runtimes now so that the check for changes is done before launch
+        JavaRuntimeFinder.setCacheFile(new File(baseDir, "java_runtimes.json"));
+        CompletableFuture.runAsync(JavaRuntimeFinder::getAvailableRuntimes, executor);
+
+        CompletableFuture<Void> loadConfig = CompletableFuture.runAsync(() -> {
+            try (Metrics.Span span = startupMetrics.start("loadConfig")) {
+                this.config = Persistence.load(new File(configDir, "config.json"), Configuration.class);
+            }
         }, executor);
 
-        CompletableFuture<Void> cleanupTask = CompletableFuture.runAsync(this::cleanupExtractDir, executor);
+        CompletableFuture<Void> loadAccounts = CompletableFuture.runAsync(() -> {
+            try (Metrics.Span span = startupMetrics.start("loadAccounts")) {
+                this.accounts = Persistence.load(new File(configDir, "accounts.dat"), AccountList.class);
+            }
+        }, executor);
 
-        CompletableFuture<Void> allTasks = CompletableFuture.allOf(loadConfigAndAccounts, cleanupTask);
+        // Show the instances from last time until the remote list has been downloaded
+        CompletableFuture<Void> loadInstances = CompletableFuture.runAsync(() -> {
+            try (Metrics.Span span = startupMetrics.start("loadInstanceSnapshot")) {
+                instances.loadSnapshot();
+            }
+        }, executor);
 
-        // Wait for all tasks to complete
+        // Nothing needs the old files to be gone, so don't wait for them
+        CompletableFuture.runAsync(this::cleanupExtractDir, executor);
+        CompletableFuture.runAsync(nativesCache::prune, executor);
+        CompletableFuture.runAsync(objectStore::prune, executor);
+
+        // Wait for what the main window needs
         try {
-            allTasks.get();
+            CompletableFuture.allOf(loadConfig, loadAccounts, loadInstances).get();
         } catch (InterruptedException | ExecutionException e) {
             log.log(Level.WARNING, "Error while executing startup tasks", e);
         }
@@ -252,17 +283,6 @@ public final class Launcher {
         }
     }
 
-    /**
-     * Create a new temporary directory to extract files to.
-     *
-     * @return the directory path
-     */
-    public File createExtractDir() {
-        File dir = new File(getExtractDir(), String.valueOf(System.currentTimeMillis()));
-        dir.mkdirs();
-        log.info("Created temporary directory " + dir.getAbsolutePath());
-        return dir;
-    }
 
     /**
      * Get the directory to store the launcher binaries.
@@ -407,7 +427,28 @@ public final class Launcher {
      * Show the launcher.
      */
     public void showLauncherWindow() {
-        mainWindowSupplier.get().setVisible(true);
+        Window window;
+        try (Metrics.Span span = startupMetrics.start("createWindow")) {
+            window = mainWindowSupplier.get();
+        }
+        window.setVisible(true);
+
+        if (!startupReported) {
+            startupReported = true;
+            // Queued behind the events that paint the window for the first time
+            SwingUtilities.invokeLater(this::reportStartup);
+        }
+    }
+
+    /**
+     * Log and save how long it took from the start of the JVM until the main
+     * window could be used.
+     */
+    private void reportStartup() {
+        long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        log.info("Launcher window ready " + elapsed + " ms after start");
+        startupMetrics.count("startup.windowReadyMillis", elapsed);
+        executor.submit(() -> startupMetrics.write(new File(baseDir, "startup_metrics.json")));
     }
 
     /**
@@ -436,6 +477,7 @@ public final class Launcher {
      * Setup loggers and perform initialization.
      */
     public static void setupLogger() {
+        HttpConnections.configure();
         SimpleLogFormatter.configureGlobalLogger();
 
         // Добавьте интеграцию Loggly в ваш метод setupLogger
@@ -42,6 +42,8 @@ public class ConfigurationDialog extends JDialog {
     private final JSpinner minMemorySpinner = new JSpinner();
     private final JSpinner maxMemorySpinner = new JSpinner();
     private final JSpinner permGenSpinner = new JSpinner();
+    private final JCheckBox automaticMemoryCheck = new JCheckBox(SharedLocale.tr("options.automaticMemory"));
+    private final JCheckBox classDataSharingCheck = new JCheckBox(SharedLocale.tr("options.classDataSharing"));
     private final FormPanel gameSettingsPanel = new FormPanel();
     private final JSpinner widthSpinner = new JSpinner();
     private final JSpinner heightSpinner = new JSpinner();
@@ -102,6 +104,8 @@ public class ConfigurationDialog extends JDialog {
             mapper.map(minMemorySpinner, "minMemory");
             mapper.map(maxMemorySpinner, "maxMemory");
             mapper.map(permGenSpinner, "permGen");
+            mapper.map(automaticMemoryCheck, "automaticMemory");
+            mapper.map(classDataSharingCheck, "classDataSharing");
             mapper.map(widthSpinner, "windowWidth");
             mapper.map(heightSpinner, "windowHeight");
             mapper.map(useProxyCheck, "proxyEnabled");
@@ -122,6 +126,8 @@ public class ConfigurationDialog extends JDialog {
         javaSettingsPanel.addRow(new JLabel(SharedLocale.tr("options.minMemory")), minMemorySpinner);
         javaSettingsPanel.addRow(new JLabel(SharedLocale.tr("options.maxMemory")), maxMemorySpinner);
         javaSettingsPanel.addRow(new JLabel(SharedLocale.tr("options.permGen")), permGenSpinner);
+        javaSettingsPanel.addRow(automaticMemoryCheck);
+        javaSettingsPanel.addRow(classDataSharingCheck);
         SwingHelper.removeOpaqueness(javaSettingsPanel);
         tabbedPane.addTab(SharedLocale.tr("options.javaTab"), SwingHelper.alignTabbedPane(javaSettingsPanel));
 
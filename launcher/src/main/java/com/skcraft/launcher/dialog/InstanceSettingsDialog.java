@@ -3,6 +3,7 @@ package com.skcraft.launcher.dialog;
 import com.skcraft.launcher.Instance;
 import com.skcraft.launcher.InstanceSettings;
 import com.skcraft.launcher.dialog.component.BetterComboBox;
+import com.skcraft.launcher.launch.GarbageCollector;
 import com.skcraft.launcher.launch.MemorySettings;
 import com.skcraft.launcher.launch.runtime.JavaRuntime;
 import com.skcraft.launcher.launch.runtime.JavaRuntimeFinder;
@@ -14,6 +15,7 @@ import lombok.extern.java.Log;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Optional;
 
 @Log
 public class InstanceSettingsDialog extends JDialog {
@@ -24,6 +26,7 @@ public class InstanceSettingsDialog extends JDialog {
     private final JCheckBox enableMemorySettings = new JCheckBox(SharedLocale.tr("instance.options.customMemory"));
     private final JSpinner minMemorySpinner = new JSpinner();
     private final JSpinner maxMemorySpinner = new JSpinner();
+    private final JComboBox<GarbageCollector> garbageCollectorBox = new JComboBox<>(GarbageCollector.values());
 
     private final JCheckBox enableCustomRuntime = new JCheckBox(SharedLocale.tr("instance.options.customJava"));
     private final FormPanel runtimePanel = new FormPanel();
@@ -51,6 +54,7 @@ public class InstanceSettingsDialog extends JDialog {
         memorySettingsPanel.addRow(enableMemorySettings);
         memorySettingsPanel.addRow(new JLabel(SharedLocale.tr("options.minMemory")), minMemorySpinner);
         memorySettingsPanel.addRow(new JLabel(SharedLocale.tr("options.maxMemory")), maxMemorySpinner);
+        memorySettingsPanel.addRow(new JLabel(SharedLocale.tr("options.garbageCollector")), garbageCollectorBox);
 
         // TODO: Do we keep this list centrally somewhere? Or is actively refreshing good?
         JavaRuntime[] javaRuntimes = JavaRuntimeFinder.getAvailableRuntimes().toArray(new JavaRuntime[0]);
@@ -102,6 +106,8 @@ public class InstanceSettingsDialog extends JDialog {
 
             minMemorySpinner.setValue(settings.getMemorySettings().getMinMemory());
             maxMemorySpinner.setValue(settings.getMemorySettings().getMaxMemory());
+            garbageCollectorBox.setSelectedItem(Optional.ofNullable(settings.getMemorySettings().getGarbageCollector())
+                    .orElse(GarbageCollector.AUTOMATIC));
         } else {
             memorySettingsPanel.setEnabled(false);
             enableMemorySettings.setSelected(false);
@@ -125,6 +131,7 @@ public class InstanceSettingsDialog extends JDialog {
 
             memorySettings.setMinMemory((int) minMemorySpinner.getValue());
             memorySettings.setMaxMemory((int) maxMemorySpinner.getValue());
+            memorySettings.setGarbageCollector((GarbageCollector) garbageCollectorBox.getSelectedItem());
         } else {
             settings.setMemorySettings(null);
         }
@@ -70,10 +70,16 @@ public class LauncherFrame extends JFrame {
 
         SwingHelper.setFrameIcon(this, Launcher.class, "icon.png");
 
+        // Show the instances from last time while the list is refreshed
+        final boolean cached = launcher.getInstances().size() > 0;
+        if (cached) {
+            instancesModel.update();
+        }
+
         SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
             @Override
             protected Void doInBackground() {
-                loadInstances();
+                loadInstances(!cached);
                 return null;
             }
         };
@@ -105,7 +111,7 @@ public class LauncherFrame extends JFrame {
         instancesModel.addTableModelListener(new TableModelListener() {
             @Override
             public void tableChanged(TableModelEvent e) {
-                if (instancesTable.getRowCount() > 0) {
+                if (instancesTable.getRowCount() > 0 && instancesTable.getSelectedRow() < 0) {
                     instancesTable.setRowSelectionInterval(0, 0);
                 }
             }
@@ -135,7 +141,7 @@ public class LauncherFrame extends JFrame {
                 Instance selected = null;
                 if (index >= 0) {
                     instancesTable.setRowSelectionInterval(index, index);
-                    selected = launcher.getInstances().get(index);
+                    selected = launcher.getInstances().get(instancesModel.getNameAt(index));
                 }
                 popupInstanceMenu(e.getComponent(), e.getX(), e.getY(), selected);
             }
@@ -314,21 +320,49 @@ public class LauncherFrame extends JFrame {
     }
 
     private void loadInstances() {
-        ObservableFuture<InstanceList> future = launcher.getInstanceTasks().reloadInstances(this);
+        loadInstances(true);
+    }
+
+    /**
+     * Reload the list of instances, keeping the selected instance selected.
+     *
+     * @param showProgress true to show a progress dialog while loading
+     */
+    private void loadInstances(boolean showProgress) {
+        ObservableFuture<InstanceList> future = showProgress
+                ? launcher.getInstanceTasks().reloadInstances(this)
+                : launcher.getInstanceTasks().refreshInstances(this);
 
         future.addListener(new Runnable() {
             @Override
             public void run() {
+                // The list has already changed, so find what was selected from the model
+                String selectedName = instancesModel.getNameAt(instancesTable.getSelectedRow());
                 instancesModel.update();
-                if (instancesTable.getRowCount() > 0) {
-                    instancesTable.setRowSelectionInterval(0, 0);
-                }
+                selectInstance(selectedName);
                 requestFocus();
             }
         }, SwingExecutor.INSTANCE);
 
-        ProgressDialog.showProgress(this, future, SharedLocale.tr("launcher.checkingTitle"), SharedLocale.tr("launcher.checkingStatus"));
-        SwingHelper.addErrorDialogCallback(this, future);
+        if (showProgress) {
+            ProgressDialog.showProgress(this, future, SharedLocale.tr("launcher.checkingTitle"), SharedLocale.tr("launcher.checkingStatus"));
+            SwingHelper.addErrorDialogCallback(this, future);
+        }
+    }
+
+    private void selectInstance(String name) {
+        InstanceList instances = launcher.getInstances();
+        int index = 0;
+        for (int i = 0; i < instances.size(); i++) {
+            if (instances.get(i).getName().equals(name)) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index < instancesTable.getRowCount()) {
+            instancesTable.setRowSelectionInterval(index, index);
+        }
     }
 
     private void showOptions() {
@@ -340,11 +374,15 @@ public class LauncherFrame extends JFrame {
         boolean permitUpdate = updateCheck.isSelected();
         int selectedIndex = instancesTable.getSelectedRow();
 
-        if (selectedIndex < 0 || selectedIndex >= launcher.getInstances().size()) {
+        if (selectedIndex < 0 || selectedIndex >= instancesModel.getRowCount()) {
             selectedIndex = 0;
         }
 
-        Instance instance = launcher.getInstances().get(selectedIndex);
+        // The list may have been reloaded since the table was last updated, so go by the name shown
+        Instance instance = launcher.getInstances().get(instancesModel.getNameAt(selectedIndex));
+        if (instance == null) {
+            return;
+        }
 
         LaunchOptions options = new LaunchOptions.Builder()
                 .setInstance(instance)
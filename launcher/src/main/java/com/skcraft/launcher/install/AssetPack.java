@@ -0,0 +1,206 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.install;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.skcraft.concurrency.ProgressObservable;
+import com.skcraft.launcher.AssetsRoot;
+import com.skcraft.launcher.model.minecraft.Asset;
+import com.skcraft.launcher.util.HttpRequest;
+import lombok.NonNull;
+import lombok.extern.java.Log;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.skcraft.launcher.LauncherUtils.checkInterrupted;
+import static com.skcraft.launcher.LauncherUtils.concat;
+import static com.skcraft.launcher.util.SharedLocale.tr;
+
+/**
+ * Fetches the assets of an asset index as a single archive instead of one
+ * request per object, which is much faster for first-time installs.
+ * <p>
+ * A pack is a .zip file named after the asset index ID (such as
+ * <code>1.19.zip</code>) whose entries are laid out like the assets
+ * objects directory (<code>xx/hash</code>). The pack is streamed and
+ * the wanted objects are unpacked straight into place. Packs can be
+ * built with the launcher builder.
+ */
+@Log
+public class AssetPack implements ProgressObservable {
+
+    private final URL baseUrl;
+    private volatile long length = -1;
+    private volatile long read;
+    private volatile int extracted;
+    private volatile boolean running;
+
+    /**
+     * Create a new instance.
+     *
+     * @param baseUrl the URL of the directory that contains the packs
+     */
+    public AssetPack(@NonNull URL baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Get the URL of the pack for an asset index.
+     *
+     * @param indexId the asset index ID
+     * @return the URL
+     * @throws MalformedURLException thrown if the URL is invalid
+     */
+    public URL getUrl(@NonNull String indexId) throws MalformedURLException {
+        return concat(baseUrl, indexId + ".zip");
+    }
+
+    /**
+     * Download the pack for an asset index and unpack the given objects.
+     * Objects that are not in the pack or don't match their hash are skipped,
+     * and if the pack can't be downloaded, no objects are unpacked.
+     *
+     * @param assetsRoot the assets root
+     * @param indexId    the asset index ID
+     * @param wanted     the objects to unpack, keyed by hash
+     * @return the hashes of the unpacked objects
+     * @throws InterruptedException thrown on interruption
+     */
+    public Set<String> extract(@NonNull AssetsRoot assetsRoot, @NonNull String indexId,
+                               @NonNull Map<String, Asset> wanted) throws InterruptedException {
+        Set<String> done = new HashSet<String>();
+        HttpRequest request = null;
+        running = true;
+
+        try {
+            URL url = getUrl(indexId);
+            log.info("Fetching asset pack from " + url + "...");
+
+            request = HttpRequest.get(url).execute().expectResponseCode(200);
+            String contentLength = request.getResponseHeader("Content-Length");
+            if (contentLength != null) {
+                length = Long.parseLong(contentLength.trim());
+            }
+
+            ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new CountingInputStream(request.getInputStream())));
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                checkInterrupted();
+
+                String name = entry.getName();
+                String hash = name.substring(name.lastIndexOf('/') + 1).toLowerCase();
+                Asset asset = wanted.get(hash);
+
+                if (!entry.isDirectory() && asset != null && !done.contains(hash)) {
+                    if (unpack(zis, assetsRoot.getObjectPath(asset), hash)) {
+                        done.add(hash);
+                        extracted = done.size();
+                    } else {
+                        log.log(Level.WARNING, "Asset pack object {0} does not match its hash", name);
+                    }
+                }
+            }
+
+            log.log(Level.INFO, "Unpacked {0} of {1} assets from the asset pack", new Object[]{done.size(), wanted.size()});
+        } catch (IOException | NumberFormatException e) {
+            log.log(Level.WARNING, "Failed to use the asset pack for " + indexId +
+                    ", so assets will be downloaded individually", e);
+        } finally {
+            running = false;
+            if (request != null) {
+                try {
+                    request.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        return done;
+    }
+
+    private static boolean unpack(InputStream in, File target, String hash) throws IOException {
+        File tempFile = new File(target.getParentFile(), target.getName() + ".tmp");
+        target.getParentFile().mkdirs();
+
+        Hasher hasher = Hashing.sha1().newHasher();
+        OutputStream out = new FileOutputStream(tempFile);
+        try {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+                hasher.putBytes(buffer, 0, len);
+            }
+        } finally {
+            out.close();
+        }
+
+        try {
+            if (!hasher.hash().toString().equals(hash)) {
+                return false;
+            }
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    @Override
+    public double getProgress() {
+        long length = this.length;
+        return length > 0 ? Math.min(1, read / (double) length) : -1;
+    }
+
+    @Override
+    public String getStatus() {
+        if (running) {
+            return tr("assets.unpackingPack", extracted);
+        } else {
+            return tr("instanceUpdater.collectingAssets");
+        }
+    }
+
+    /**
+     * Counts the bytes read from the pack to report progress.
+     */
+    private class CountingInputStream extends FilterInputStream {
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                read++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                read += count;
+            }
+            return count;
+        }
+    }
+
+}
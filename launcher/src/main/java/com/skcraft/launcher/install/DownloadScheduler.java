@@ -0,0 +1,197 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.install;
+
+import lombok.extern.java.Log;
+
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * Hands out queued downloads to worker threads, largest files first, while
+ * limiting the number of connections open to each host.
+ * <p>
+ * Each host's limit is adjusted after every round of downloads from it:
+ * it grows by one connection while the host's throughput keeps up, shrinks
+ * by one when throughput drops, and is halved when a download fails.
+ * Downloads split into several parts take the connections for their extra
+ * parts from the same limit.
+ */
+@Log
+class DownloadScheduler {
+
+    private final Map<String, Host> hosts = new HashMap<String, Host>();
+    private final int initialLimit;
+    private final int maxLimit;
+    private int pending;
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param jobs         the jobs to schedule
+     * @param initialLimit the number of connections to open to a host at first
+     * @param maxLimit     the maximum number of connections to open to a host
+     */
+    DownloadScheduler(Collection<HttpDownloader.HttpDownloadJob> jobs, int initialLimit, int maxLimit) {
+        this.initialLimit = Math.max(1, Math.min(initialLimit, maxLimit));
+        this.maxLimit = Math.max(1, maxLimit);
+
+        List<HttpDownloader.HttpDownloadJob> sorted = new ArrayList<HttpDownloader.HttpDownloadJob>(jobs);
+        Collections.sort(sorted, new Comparator<HttpDownloader.HttpDownloadJob>() {
+            @Override
+            public int compare(HttpDownloader.HttpDownloadJob o1, HttpDownloader.HttpDownloadJob o2) {
+                return Long.compare(o2.getSize(), o1.getSize());
+            }
+        });
+
+        for (HttpDownloader.HttpDownloadJob job : sorted) {
+            getHost(job.getHost()).queue.add(job);
+        }
+        pending = sorted.size();
+    }
+
+    /**
+     * Wait for a job whose host has a free connection. No more jobs are
+     * handed out once the calling thread has been interrupted.
+     *
+     * @return the job, or null if there are no more jobs
+     * @throws InterruptedException thrown on interruption
+     */
+    synchronized HttpDownloader.HttpDownloadJob take() throws InterruptedException {
+        while (pending > 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            // Of the hosts with a free connection, pick the one with the largest waiting file
+            Host best = null;
+            for (Host host : hosts.values()) {
+                if (!host.queue.isEmpty() && host.active < (int) host.limit
+                        && (best == null || host.queue.peek().getSize() > best.queue.peek().getSize())) {
+                    best = host;
+                }
+            }
+
+            if (best != null) {
+                pending--;
+                best.active++;
+                return best.queue.poll();
+            }
+
+            wait();
+        }
+
+        return null;
+    }
+
+    /**
+     * Take up to the given number of free connections to a host for the
+     * extra parts of a download that is already running, without waiting.
+     * The connections must be given back with {@link #release(String, int)}.
+     *
+     * @param hostName the host
+     * @param wanted   the number of connections wanted
+     * @return the number of connections taken, which may be zero
+     */
+    synchronized int reserve(String hostName, int wanted) {
+        Host host = getHost(hostName);
+        int taken = Math.max(0, Math.min(wanted, (int) host.limit - host.active));
+        host.active += taken;
+        return taken;
+    }
+
+    /**
+     * Give back connections taken with {@link #reserve(String, int)}.
+     *
+     * @param hostName the host
+     * @param count    the number of connections
+     */
+    synchronized void release(String hostName, int count) {
+        if (count > 0) {
+            getHost(hostName).active -= count;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Report that a download attempt from the given host failed.
+     *
+     * @param hostName the host
+     */
+    synchronized void failed(String hostName) {
+        Host host = getHost(hostName);
+        host.limit = Math.max(1, host.limit / 2);
+        host.resetRound();
+        log.log(Level.INFO, "Reducing connections to {0} to {1}", new Object[]{hostName, (int) host.limit});
+    }
+
+    /**
+     * Report that a job has finished and release its connection.
+     *
+     * @param job        the job
+     * @param successful true if the file was downloaded
+     * @param bytes      the number of bytes transferred
+     */
+    synchronized void complete(HttpDownloader.HttpDownloadJob job, boolean successful, long bytes) {
+        Host host = getHost(job.getHost());
+        host.active--;
+
+        // Files taken from the object store say nothing about the host
+        if (successful && bytes > 0) {
+            host.roundBytes += bytes;
+            if (++host.roundCount >= (int) host.limit) {
+                host.adjust();
+            }
+        }
+
+        notifyAll();
+    }
+
+    private Host getHost(String name) {
+        Host host = hosts.get(name);
+        if (host == null) {
+            host = new Host(initialLimit);
+            hosts.put(name, host);
+        }
+        return host;
+    }
+
+    private class Host {
+        private final Queue<HttpDownloader.HttpDownloadJob> queue = new LinkedList<HttpDownloader.HttpDownloadJob>();
+        private double limit;
+        private int active;
+        private int roundCount;
+        private long roundBytes;
+        private long roundStart = System.nanoTime();
+        private double lastThroughput;
+
+        private Host(double limit) {
+            this.limit = limit;
+        }
+
+        private void adjust() {
+            long elapsed = Math.max(1, System.nanoTime() - roundStart);
+            double throughput = roundBytes / (double) elapsed;
+
+            if (throughput >= lastThroughput * 0.9) {
+                limit = Math.min(maxLimit, limit + 1);
+            } else {
+                limit = Math.max(1, limit - 1);
+            }
+
+            lastThroughput = throughput;
+            resetRound();
+        }
+
+        private void resetRound() {
+            roundCount = 0;
+            roundBytes = 0;
+            roundStart = System.nanoTime();
+        }
+    }
+
+}
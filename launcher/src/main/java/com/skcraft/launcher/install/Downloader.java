@@ -18,4 +18,31 @@ public interface Downloader extends ProgressObservable {
     File download(List<URL> urls, String key, long size, String name);
 
     File download(URL url, String key, long size, String name);
+
+    /**
+     * Queue a download of a file with a known SHA-1 hash, which is checked
+     * once the file is downloaded.
+     *
+     * @param urls a list of URLs to try
+     * @param key  the key to identify the download with
+     * @param hash the SHA-1 hash of the file, or null if not known
+     * @param size the size of the file, or an estimate of it
+     * @param name the name to show in the progress dialog
+     * @return the path where the file will be downloaded to
+     */
+    File download(List<URL> urls, String key, String hash, long size, String name);
+
+    /**
+     * Queue a download of a file with a known SHA-1 hash, which allows the
+     * file to be taken from the shared object store instead of downloaded.
+     *
+     * @param urls    a list of URLs to try
+     * @param key     the key to identify the download with
+     * @param hash    the SHA-1 hash of the file, or null if not known
+     * @param size    the size of the file, or an estimate of it
+     * @param name    the name to show in the progress dialog
+     * @param sharing how the file is shared with the object store
+     * @return the path where the file will be downloaded to
+     */
+    File download(List<URL> urls, String key, String hash, long size, String name, ObjectStore.Sharing sharing);
 }
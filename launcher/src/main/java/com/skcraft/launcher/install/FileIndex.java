@@ -0,0 +1,106 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.install;
+
+import com.google.common.hash.Hashing;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the SHA-1 hash of installed files along with their size,
+ * modification time and (where available) file key, so that unchanged
+ * files don't have to be hashed again on every update.
+ */
+@Data
+public class FileIndex {
+
+    private Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * Get the SHA-1 hash of a file, only reading the file if it has changed
+     * since it was last indexed.
+     *
+     * @param key  the key of the file, such as its path in the instance
+     * @param file the file
+     * @return the hash, or null if the file does not exist
+     * @throws IOException on I/O error
+     */
+    public String getHash(@NonNull String key, @NonNull File file) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.matches(attributes)) {
+                return entry.getHash();
+            }
+        }
+
+        String hash = com.google.common.io.Files.hash(file, Hashing.sha1()).toString();
+        put(key, attributes, hash);
+        return hash;
+    }
+
+    /**
+     * Record the hash of a file that has just been installed.
+     *
+     * @param key  the key of the file, such as its path in the instance
+     * @param file the file
+     * @param hash the SHA-1 hash of the file
+     * @throws IOException on I/O error
+     */
+    public void put(@NonNull String key, @NonNull File file, @NonNull String hash) throws IOException {
+        put(key, Files.readAttributes(file.toPath(), BasicFileAttributes.class), hash);
+    }
+
+    /**
+     * Forget every file except the given ones.
+     *
+     * @param keys the keys of the files to keep
+     */
+    public synchronized void retainAll(@NonNull Collection<String> keys) {
+        entries.keySet().retainAll(keys);
+    }
+
+    private synchronized void put(String key, BasicFileAttributes attributes, String hash) {
+        Entry entry = new Entry();
+        entry.setSize(attributes.size());
+        entry.setModified(attributes.lastModifiedTime().toMillis());
+        entry.setFileKey(attributes.fileKey() != null ? attributes.fileKey().toString() : null);
+        entry.setHash(hash);
+        entries.put(key, entry);
+    }
+
+    @Data
+    public static class Entry {
+        private long size;
+        private long modified;
+        private String fileKey;
+        private String hash;
+
+        private boolean matches(BasicFileAttributes attributes) {
+            String fileKey = attributes.fileKey() != null ? attributes.fileKey().toString() : null;
+            return size == attributes.size()
+                    && modified == attributes.lastModifiedTime().toMillis()
+                    && (this.fileKey == null ? fileKey == null : this.fileKey.equals(fileKey));
+        }
+    }
+
+}
@@ -12,6 +12,8 @@ import lombok.extern.java.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.logging.Level;
 
 import static com.skcraft.launcher.util.SharedLocale.tr;
@@ -35,6 +37,16 @@ public class FileMover implements InstallTask {
         from.renameTo(to);
     }
 
+    @Override
+    public Collection<File> getInputs() {
+        return Collections.singletonList(from);
+    }
+
+    @Override
+    public Collection<File> getOutputs() {
+        return Collections.singletonList(to);
+    }
+
     @Override
     public double getProgress() {
         return -1;
@@ -2,15 +2,21 @@ package com.skcraft.launcher.install;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
+import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.skcraft.concurrency.ProgressObservable;
+import com.skcraft.launcher.util.HttpConnections;
 import com.skcraft.launcher.util.HttpRequest;
+import com.skcraft.launcher.util.Metrics;
 import com.skcraft.launcher.util.SharedLocale;
+import lombok.AccessLevel;
+import lombok.Data;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -20,8 +26,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 import static com.skcraft.launcher.util.SharedLocale.tr;
@@ -29,26 +40,44 @@ import static com.skcraft.launcher.util.SharedLocale.tr;
 @Log
 public class HttpDownloader implements Downloader {
 
+    private static final long SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 4;
+
     private final Random random = new Random();
     private final HashFunction hf = Hashing.sha1();
 
     private final File tempDir;
     private final Set<String> usedKeys = new HashSet<String>();
-    private final List<HttpDownloadJob> running = new ArrayList<HttpDownloadJob>();
-    private final List<HttpDownloadJob> failed = new ArrayList<HttpDownloadJob>();
+    private final Set<HttpDownloadJob> running = Collections.newSetFromMap(new ConcurrentHashMap<HttpDownloadJob, Boolean>());
+    private final AtomicInteger failed = new AtomicInteger();
+    @Getter
+    @Setter
+    private int threadCount = 16;
     @Getter
     @Setter
-    private int threadCount = 6;
+    private int hostThreadCount = 6;
     @Getter
     @Setter
     private int retryDelay = 2000;
     @Getter
     @Setter
     private int tryCount = 3;
-    private List<HttpDownloadJob> queue = new ArrayList<HttpDownloadJob>();
-    private long downloaded = 0;
-    private long total = 0;
-    private int left = 0;
+    @Getter
+    @Setter
+    private ObjectStore objectStore;
+    @Getter
+    @Setter
+    private Consumer<File> completionListener;
+    @Getter
+    @Setter
+    @NonNull
+    private Metrics metrics = new Metrics("download");
+    private volatile List<HttpDownloadJob> queue = new ArrayList<HttpDownloadJob>();
+    private volatile DownloadScheduler scheduler;
+    private volatile HttpConnections.Stats initialStats = HttpConnections.getStats();
+    private final LongAdder downloaded = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicInteger left = new AtomicInteger();
 
     /**
      * Create a new downloader using the given executor.
@@ -76,20 +105,32 @@ public class HttpDownloader implements Downloader {
     }
 
     @Override
-    public synchronized File download(@NonNull List<URL> urls, @NonNull String key, long size, String name) {
+    public File download(@NonNull List<URL> urls, @NonNull String key, long size, String name) {
+        return download(urls, key, null, size, name);
+    }
+
+    @Override
+    public File download(@NonNull List<URL> urls, @NonNull String key, String hash, long size, String name) {
+        return download(urls, key, hash, size, name, ObjectStore.Sharing.NONE);
+    }
+
+    @Override
+    public synchronized File download(@NonNull List<URL> urls, @NonNull String key, String hash, long size,
+                                      String name, @NonNull ObjectStore.Sharing sharing) {
         if (urls.isEmpty()) {
             throw new IllegalArgumentException("Can't download empty list of URLs");
         }
 
-        String hash = hf.hashString(Strings.nullToEmpty(key) + urls.get(0), Charsets.UTF_8).toString();
-        hash = createUniqueKey(hash);
-        File tempFile = new File(tempDir, hash.substring(0, 2) + "/" + hash);
+        String tempKey = hf.hashString(Strings.nullToEmpty(key) + urls.get(0), Charsets.UTF_8).toString();
+        tempKey = createUniqueKey(tempKey);
+        File tempFile = new File(tempDir, tempKey.substring(0, 2) + "/" + tempKey);
 
         // If the file is already downloaded (such as from before), then don't re-download
         if (!tempFile.exists()) {
-            total += size;
-            left++;
-            queue.add(new HttpDownloadJob(tempFile, urls, size, name != null ? name : tempFile.getName()));
+            total.add(size);
+            left.incrementAndGet();
+            queue.add(new HttpDownloadJob(tempFile, urls, hash, size, name != null ? name : tempFile.getName(),
+                    hash != null ? sharing : ObjectStore.Sharing.NONE));
         }
 
         return tempFile;
@@ -103,27 +144,58 @@ public class HttpDownloader implements Downloader {
         return download(urls, key, size, name);
     }
 
+    /**
+     * Get the files that are queued to be downloaded.
+     *
+     * @return the files
+     */
+    public synchronized Set<File> getQueuedFiles() {
+        Set<File> files = new HashSet<File>();
+        for (HttpDownloadJob job : queue) {
+            files.add(job.destFile);
+        }
+        return files;
+    }
+
     /**
      * Prevent further downloads from being queued and download queued files.
+     * <p>
+     * Up to {@link #getThreadCount()} files are downloaded at a time, starting
+     * with {@link #getHostThreadCount()} connections to each host and adapting
+     * that number to the throughput and errors seen from the host.
      *
      * @throws InterruptedException thrown on interruption
      * @throws IOException          thrown on I/O error
      */
     public void execute() throws InterruptedException, IOException {
+        final DownloadScheduler scheduler;
+
         synchronized (this) {
             queue = Collections.unmodifiableList(queue);
+            scheduler = new DownloadScheduler(queue, hostThreadCount, threadCount);
+            this.scheduler = scheduler;
+            initialStats = HttpConnections.getStats();
         }
 
+        metrics.count("download.queued", queue.size());
+
         ListeningExecutorService executor = MoreExecutors.listeningDecorator(
                 Executors.newFixedThreadPool(threadCount));
 
         try {
             List<ListenableFuture<?>> futures = new ArrayList<ListenableFuture<?>>();
 
-            synchronized (this) {
-                for (HttpDownloadJob job : queue) {
-                    futures.add(executor.submit(job));
-                }
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws InterruptedException {
+                        HttpDownloadJob job;
+                        while (!Thread.currentThread().isInterrupted() && (job = scheduler.take()) != null) {
+                            job.run();
+                        }
+                        return null;
+                    }
+                }));
             }
 
             try {
@@ -132,100 +204,198 @@ public class HttpDownloader implements Downloader {
                 throw new IOException("Something went wrong", e);
             }
 
-            synchronized (this) {
-                if (failed.size() > 0) {
-                    throw new IOException(failed.size() + " file(s) could not be downloaded");
-                }
+            if (failed.get() > 0) {
+                throw new IOException(failed.get() + " file(s) could not be downloaded");
             }
         } finally {
             executor.shutdownNow();
+
+            ObjectStore objectStore = this.objectStore;
+            if (objectStore != null) {
+                objectStore.save();
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot of the state of the downloads. This never waits for
+     * the download threads, so it can be polled as often as needed.
+     *
+     * @return the snapshot
+     */
+    public Snapshot getSnapshot() {
+        long downloaded = this.downloaded.sum();
+        List<JobSnapshot> jobs = new ArrayList<JobSnapshot>();
+        for (HttpDownloadJob job : running) {
+            double progress = job.getProgress();
+            downloaded += Math.max(0, progress * job.size);
+            jobs.add(new JobSnapshot(job.getName(), progress));
         }
+
+        return new Snapshot(downloaded, total.sum(), queue.size(), left.get(), failed.get(), jobs,
+                HttpConnections.getStats().since(initialStats));
     }
 
     @Override
-    public synchronized double getProgress() {
-        if (total <= 0) {
-            return -1;
+    public double getProgress() {
+        return getSnapshot().getProgress();
+    }
+
+    @Override
+    public String getStatus() {
+        return getSnapshot().getStatus();
+    }
+
+    /**
+     * The state of the downloads at one point in time.
+     */
+    @Data
+    public static class Snapshot {
+        private final long downloaded;
+        private final long total;
+        private final int queued;
+        private final int left;
+        private final int failed;
+        private final List<JobSnapshot> running;
+        private final HttpConnections.Stats connectionStats;
+
+        public double getProgress() {
+            if (total <= 0) {
+                return -1;
+            }
+            // A job that just finished may be counted twice for a moment
+            return Math.min(1, downloaded / (double) total);
         }
 
-        long downloaded = this.downloaded;
-        for (HttpDownloadJob job : running) {
-            downloaded += Math.max(0, job.getProgress() * job.size);
+        public String getStatus() {
+            String failMessage = tr("downloader.failedCount", failed) + "\n" +
+                    tr("downloader.connectionStats", connectionStats.getRequests(),
+                            connectionStats.getHandshakes(), connectionStats.getReusePercent());
+            if (running.size() == 1) {
+                return tr("downloader.downloadingItem", running.get(0).getName()) +
+                        "\n" + running.get(0).getStatus() +
+                        "\n" + failMessage;
+            } else if (running.size() > 0) {
+                StringBuilder builder = new StringBuilder();
+                for (JobSnapshot job : running) {
+                    builder.append("\n");
+                    builder.append(job.getStatus());
+                }
+                return tr("downloader.downloadingList", queued, left, failed) +
+                        builder +
+                        "\n" + failMessage;
+            } else {
+                return SharedLocale.tr("downloader.noDownloads");
+            }
         }
-        return downloaded / (double) total;
     }
 
-    @Override
-    public synchronized String getStatus() {
-        String failMessage = tr("downloader.failedCount", failed.size());
-        if (running.size() == 1) {
-            return tr("downloader.downloadingItem", running.get(0).getName()) +
-                    "\n" + running.get(0).getStatus() +
-                    "\n" + failMessage;
-        } else if (running.size() > 0) {
-            StringBuilder builder = new StringBuilder();
-            for (HttpDownloadJob job : running) {
-                builder.append("\n");
-                builder.append(job.getStatus());
+    /**
+     * The state of a running download at one point in time.
+     */
+    @Data
+    public static class JobSnapshot {
+        private final String name;
+        private final double progress;
+
+        public String getStatus() {
+            if (progress >= 0) {
+                return tr("downloader.jobProgress", name, Math.round(progress * 100 * 100) / 100.0);
+            } else {
+                return tr("downloader.jobPending", name);
             }
-            return tr("downloader.downloadingList", queue.size(), left, failed.size()) +
-                    builder +
-                    "\n" + failMessage;
-        } else {
-            return SharedLocale.tr("downloader.noDownloads");
         }
     }
 
     public class HttpDownloadJob implements Runnable, ProgressObservable {
         private final File destFile;
         private final List<URL> urls;
+        private final String hash;
+        private final ObjectStore.Sharing sharing;
+        @Getter(AccessLevel.PACKAGE)
         private final long size;
         @Getter
         private final String name;
-        private HttpRequest request;
-
-        private HttpDownloadJob(File destFile, List<URL> urls, long size, String name) {
+        @Getter(AccessLevel.PACKAGE)
+        private final String host;
+        private volatile HttpRequest request;
+        private volatile SegmentedDownload segmentedDownload;
+        private long transferred;
+
+        private HttpDownloadJob(File destFile, List<URL> urls, String hash, long size, String name,
+                                ObjectStore.Sharing sharing) {
             this.destFile = destFile;
             this.urls = urls;
+            this.hash = hash;
+            this.sharing = sharing;
             this.size = size;
             this.name = name;
+            this.host = Strings.nullToEmpty(urls.get(0).getHost());
         }
 
         @Override
         public void run() {
+            Metrics metrics = HttpDownloader.this.metrics;
+            long start = System.nanoTime();
+            boolean successful = false;
+
             try {
-                synchronized (HttpDownloader.this) {
-                    running.add(this);
-                }
+                running.add(this);
 
                 download();
-
-                synchronized (HttpDownloader.this) {
-                    downloaded += size;
+                successful = true;
+                downloaded.add(size);
+                metrics.count("download.files");
+                metrics.record("download.fileTime", System.nanoTime() - start);
+
+                Consumer<File> listener = completionListener;
+                if (listener != null) {
+                    listener.accept(destFile);
                 }
             } catch (IOException e) {
-                synchronized (HttpDownloader.this) {
-                    failed.add(this);
-                }
+                failed.incrementAndGet();
+                metrics.count("download.failures");
             } catch (InterruptedException e) {
                 log.info("Download of " + destFile + " was interrupted");
+                // Keep the flag so that the worker stops taking jobs
+                Thread.currentThread().interrupt();
             } finally {
-                synchronized (HttpDownloader.this) {
-                    left--;
-                    running.remove(this);
+                left.decrementAndGet();
+                running.remove(this);
+
+                DownloadScheduler scheduler = HttpDownloader.this.scheduler;
+                if (scheduler != null) {
+                    scheduler.complete(this, successful, transferred);
                 }
             }
         }
 
         private void download() throws IOException, InterruptedException {
-            log.log(Level.INFO, "Downloading " + destFile + " from " + urls);
-
+            ObjectStore objectStore = HttpDownloader.this.objectStore;
             File destDir = destFile.getParentFile();
             File tempFile = new File(destDir, destFile.getName() + ".tmp");
             destDir.mkdirs();
 
-            // Try to download
-            download(tempFile);
+            if (objectStore != null && sharing != ObjectStore.Sharing.NONE
+                    && objectStore.materialize(hash, tempFile, sharing)) {
+                log.log(Level.INFO, "Using stored object " + hash + " for " + destFile);
+                metrics.count("download.objectStoreHits");
+            } else {
+                log.log(Level.INFO, "Downloading " + destFile + " from " + urls);
+
+                // Try to download
+                download(tempFile);
+                transferred = tempFile.length();
+                metrics.count("download.bytes", transferred);
+
+                if (objectStore != null && sharing != ObjectStore.Sharing.NONE) {
+                    try {
+                        objectStore.put(hash, tempFile, sharing);
+                    } catch (IOException e) {
+                        log.log(Level.WARNING, "Failed to add " + name + " to the object store", e);
+                    }
+                }
+            }
 
             destFile.delete();
             if (!tempFile.renameTo(destFile)) {
@@ -242,15 +412,27 @@ public class HttpDownloader implements Downloader {
                 for (URL url : urls) {
                     // Sleep between each trial
                     if (!first) {
+                        metrics.count("download.retries");
                         Thread.sleep((long) (retryDelay / 2 + (random.nextDouble() * retryDelay)));
                     }
                     first = false;
 
                     try {
-                        tryDownloadFrom(url, file, null, 0);
+                        HashCode actualHash = size >= SEGMENT_SIZE * 2
+                                ? tryDownloadSegmented(url, file)
+                                : tryDownloadFrom(url, file, null, 0);
+                        if (actualHash != null && !actualHash.toString().equalsIgnoreCase(hash)) {
+                            throw new IOException(String.format("Downloaded file from %s is corrupt (invalid hash)\n" +
+                                    "Expected '%s'\nGot '%s'", url, hash, actualHash));
+                        }
                         return;
                     } catch (IOException e) {
                         lastException = e;
+
+                        DownloadScheduler scheduler = HttpDownloader.this.scheduler;
+                        if (scheduler != null && host.equals(url.getHost())) {
+                            scheduler.failed(host);
+                        }
                     }
                 }
             } while (++trial < tryCount);
@@ -258,11 +440,45 @@ public class HttpDownloader implements Downloader {
             throw new IOException("Failed to download from " + urls, lastException);
         }
 
-        private void tryDownloadFrom(URL url, File file, HttpRequest.PartialDownloadInfo retryDetails, int tries)
+        /**
+         * Download a large file in several parts at once, which makes better use
+         * of high-latency links than a single connection does.
+         */
+        private HashCode tryDownloadSegmented(URL url, File file) throws InterruptedException, IOException {
+            // The extra parts use connections to the host like any other download
+            DownloadScheduler scheduler = HttpDownloader.this.scheduler;
+            int wanted = (int) Math.min(MAX_SEGMENTS, size / SEGMENT_SIZE) - 1;
+            int extra = scheduler != null ? scheduler.reserve(url.getHost(), wanted) : wanted;
+
+            try {
+                if (extra <= 0) {
+                    return tryDownloadFrom(url, file, null, 0);
+                }
+
+                metrics.count("download.segmented");
+                SegmentedDownload download = new SegmentedDownload(url, file, extra + 1, hash != null ? hf : null);
+                segmentedDownload = download;
+
+                try {
+                    return download.download(size);
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Failed to download " + url);
+                    throw e;
+                }
+            } finally {
+                if (scheduler != null) {
+                    scheduler.release(url.getHost(), extra);
+                }
+            }
+        }
+
+        private HashCode tryDownloadFrom(URL url, File file, HttpRequest.PartialDownloadInfo retryDetails, int tries)
                 throws InterruptedException, IOException {
             try {
+                Hasher hasher = hash != null ? hf.newHasher() : null;
                 request = HttpRequest.get(url);
-                request.setResumeInfo(retryDetails).execute().expectResponseCode(200).saveContent(file);
+                request.setResumeInfo(retryDetails).execute().expectResponseCode(200).saveContent(file, hasher);
+                return hasher != null ? hasher.hash() : null;
             } catch (IOException e) {
                 log.log(Level.WARNING, "Failed to download " + url);
 
@@ -274,25 +490,26 @@ public class HttpDownloader implements Downloader {
 
                 Optional<HttpRequest.PartialDownloadInfo> byteRangeSupport = request.canRetryPartial();
                 if (byteRangeSupport.isPresent()) {
-                    tryDownloadFrom(url, file, byteRangeSupport.get(), tries + 1);
+                    return tryDownloadFrom(url, file, byteRangeSupport.get(), tries + 1);
                 }
+
+                throw e;
             }
         }
 
         @Override
         public double getProgress() {
+            SegmentedDownload segmentedDownload = this.segmentedDownload;
+            if (segmentedDownload != null) {
+                return segmentedDownload.getProgress();
+            }
             HttpRequest request = this.request;
             return request != null ? request.getProgress() : -1;
         }
 
         @Override
         public String getStatus() {
-            double progress = getProgress();
-            if (progress >= 0) {
-                return tr("downloader.jobProgress", name, Math.round(progress * 100 * 100) / 100.0);
-            } else {
-                return tr("downloader.jobPending", name);
-            }
+            return new JobSnapshot(name, getProgress()).getStatus();
         }
     }
 }
\ No newline at end of file
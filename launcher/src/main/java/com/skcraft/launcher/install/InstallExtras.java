@@ -10,6 +10,7 @@ import java.util.HashMap;
 public class InstallExtras {
     private final File contentDir;
     private final HashMap<String, LocalLoader> loaders;
+    private final FileIndex fileIndex;
 
     public LocalLoader getLoader(String key) {
         return loaders.get(key);
@@ -12,6 +12,8 @@ import lombok.extern.java.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.logging.Level;
 
 import static com.skcraft.launcher.util.SharedLocale.tr;
@@ -22,11 +24,22 @@ public class InstallLogFileMover implements InstallTask {
     private final InstallLog installLog;
     private final File from;
     private final File to;
+    private final FileIndex fileIndex;
+    private final String indexKey;
+    private final String hash;
 
     public InstallLogFileMover(InstallLog installLog, @NonNull File from, @NonNull File to) {
+        this(installLog, from, to, null, null, null);
+    }
+
+    public InstallLogFileMover(InstallLog installLog, @NonNull File from, @NonNull File to,
+                               FileIndex fileIndex, String indexKey, String hash) {
         this.installLog = installLog;
         this.from = from;
         this.to = to;
+        this.fileIndex = fileIndex;
+        this.indexKey = indexKey;
+        this.hash = hash;
     }
 
     @Override
@@ -36,6 +49,20 @@ public class InstallLogFileMover implements InstallTask {
         to.delete();
         from.renameTo(to);
         installLog.add(to, to);
+
+        if (fileIndex != null && hash != null) {
+            fileIndex.put(indexKey, to, hash);
+        }
+    }
+
+    @Override
+    public Collection<File> getInputs() {
+        return Collections.singletonList(from);
+    }
+
+    @Override
+    public Collection<File> getOutputs() {
+        return Collections.singletonList(to);
     }
 
     @Override
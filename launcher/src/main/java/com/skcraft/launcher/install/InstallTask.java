@@ -9,8 +9,33 @@ package com.skcraft.launcher.install;
 import com.skcraft.concurrency.ProgressObservable;
 import com.skcraft.launcher.Launcher;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+
 public interface InstallTask extends ProgressObservable {
 
     void execute(Launcher launcher) throws Exception;
 
+    /**
+     * Get the files that this task reads, which have to be downloaded
+     * before the task can run.
+     *
+     * @return the files
+     */
+    default Collection<File> getInputs() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Get the files that this task writes, which tasks that read them
+     * have to wait for.
+     *
+     * @return the files, or null if the task can't tell, in which case
+     *         it runs alone, in the order it was queued
+     */
+    default Collection<File> getOutputs() {
+        return Collections.emptyList();
+    }
+
 }
@@ -8,6 +8,7 @@ package com.skcraft.launcher.install;
 
 import com.skcraft.concurrency.ProgressObservable;
 import com.skcraft.launcher.Launcher;
+import com.skcraft.launcher.util.Metrics;
 import com.skcraft.launcher.util.SharedLocale;
 import lombok.Getter;
 import lombok.NonNull;
@@ -15,13 +16,12 @@ import lombok.extern.java.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.logging.Level;
 
-import static com.skcraft.launcher.LauncherUtils.checkInterrupted;
 import static com.skcraft.launcher.util.SharedLocale.tr;
 
 @Log
@@ -30,17 +30,35 @@ public class Installer implements ProgressObservable {
     @Getter
     private final File tempDir;
     private final HttpDownloader downloader;
+    @Getter
+    private Metrics metrics = new Metrics("install");
 
     private final TaskQueue mainQueue = new TaskQueue();
     private final TaskQueue lateQueue = new TaskQueue();
 
     private transient TaskQueue activeQueue;
+    private transient volatile boolean downloading;
 
     public Installer(@NonNull File tempDir) {
         this.tempDir = tempDir;
         this.downloader = new HttpDownloader(tempDir);
     }
 
+    public Installer(@NonNull File tempDir, ObjectStore objectStore) {
+        this(tempDir);
+        this.downloader.setObjectStore(objectStore);
+    }
+
+    /**
+     * Set the metrics that downloads and tasks are recorded in.
+     *
+     * @param metrics the metrics
+     */
+    public void setMetrics(@NonNull Metrics metrics) {
+        this.metrics = metrics;
+        downloader.setMetrics(metrics);
+    }
+
     public void queue(@NonNull InstallTask runnable) {
         mainQueue.queue(runnable);
     }
@@ -55,13 +73,31 @@ public class Installer implements ProgressObservable {
 
     public void execute(Launcher launcher) throws Exception {
         activeQueue = mainQueue;
-        mainQueue.execute(launcher);
+        mainQueue.execute(launcher, metrics);
         activeQueue = null;
     }
 
+    /**
+     * Download queued files and execute the main queue at the same time,
+     * starting each task as soon as the files it reads have been downloaded.
+     *
+     * @param launcher the launcher
+     * @throws Exception thrown on a download or task error
+     */
+    public void downloadAndExecute(Launcher launcher) throws Exception {
+        activeQueue = mainQueue;
+        downloading = true;
+        try {
+            mainQueue.execute(launcher, downloader, metrics);
+        } finally {
+            downloading = false;
+            activeQueue = null;
+        }
+    }
+
     public void executeLate(Launcher launcher) throws Exception {
         activeQueue = lateQueue;
-        lateQueue.execute(launcher);
+        lateQueue.execute(launcher, metrics);
         activeQueue = null;
     }
 
@@ -71,19 +107,23 @@ public class Installer implements ProgressObservable {
 
     @Override
     public double getProgress() {
+        if (downloading) return downloader.getProgress();
         if (activeQueue == null) return 0.0;
         return activeQueue.getFinished() / (double) activeQueue.getCount();
     }
 
     @Override
     public String getStatus() {
-        if (activeQueue != null && activeQueue.getRunning() != null) {
+        if (downloading) {
+            return downloader.getStatus();
+        } else if (activeQueue != null && activeQueue.getRunning() != null) {
             InstallTask running = activeQueue.getRunning();
             String status = running.getStatus();
             if (status == null) {
                 status = running.toString();
             }
-            return tr("installer.executing", activeQueue.getCount() - activeQueue.getFinished()) + "\n" + status;
+            return tr("installer.executing", activeQueue.getCount() - activeQueue.getFinished()) + "\n" +
+                    tr("installer.criticalPath", activeQueue.getCriticalPath()) + "\n" + status;
         } else {
             return SharedLocale.tr("installer.installing");
         }
@@ -92,37 +132,62 @@ public class Installer implements ProgressObservable {
     public static class TaskQueue {
         private final ConcurrentLinkedQueue<InstallTask> queue = new ConcurrentLinkedQueue<>();
         private final AtomicInteger count = new AtomicInteger(0);
-        private final AtomicInteger finished = new AtomicInteger(0);
-        private final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        @Getter
-        private volatile InstallTask running;
+        private final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        private volatile TaskGraph graph;
 
         public void queue(@NonNull InstallTask runnable) {
             queue.add(runnable);
             count.incrementAndGet();
         }
 
-        public void execute(Launcher launcher) throws Exception {
+        /**
+         * Execute the queued tasks, running tasks in parallel where the files
+         * that they read and write allow it.
+         *
+         * @param launcher the launcher
+         * @param metrics  the metrics to record task times in
+         * @throws Exception the first exception thrown by a task
+         */
+        public void execute(Launcher launcher, Metrics metrics) throws Exception {
+            TaskGraph graph = new TaskGraph(queue, Collections.<File>emptySet(), launcher, executor, metrics);
+            this.graph = graph;
+
             try {
-                for (InstallTask runnable : queue) {
-                    checkInterrupted();
-                    running = runnable;
-                    executor.submit(() -> {
-                        try {
-                            runnable.execute(launcher);
-                        } catch (Exception e) {
-                            log.log(Level.SEVERE, "Failed to execute task: " + runnable, e);
-                        }
-                        finished.incrementAndGet();
-                    });
-                }
-                executor.shutdown();
-                while (!executor.isTerminated()) {
-                    checkInterrupted();
-                    Thread.sleep(100);
+                graph.start();
+                graph.await();
+                graph.checkComplete();
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Download the downloader's queued files while executing tasks,
+         * holding back each task until the queued files it reads are downloaded.
+         *
+         * @param launcher   the launcher
+         * @param downloader the downloader
+         * @param metrics    the metrics to record task times in
+         * @throws Exception thrown on a download error or the first exception thrown by a task
+         */
+        public void execute(Launcher launcher, HttpDownloader downloader, Metrics metrics) throws Exception {
+            TaskGraph graph = new TaskGraph(queue, downloader.getQueuedFiles(), launcher, executor, metrics);
+            this.graph = graph;
+
+            try {
+                graph.start();
+                downloader.setCompletionListener(graph::downloaded);
+
+                try {
+                    downloader.execute();
+                } finally {
+                    downloader.setCompletionListener(null);
+                    graph.await();
                 }
+
+                graph.checkComplete();
             } finally {
-                running = null;
+                executor.shutdownNow();
             }
         }
 
@@ -131,8 +196,29 @@ public class Installer implements ProgressObservable {
         }
 
         public int getFinished() {
-            return finished.get();
+            TaskGraph graph = this.graph;
+            return graph != null ? graph.getFinished() : 0;
+        }
+
+        /**
+         * Get the running task that is at the start of the longest remaining chain of tasks.
+         *
+         * @return the task, or null if no task is running
+         */
+        public InstallTask getRunning() {
+            TaskGraph graph = this.graph;
+            return graph != null ? graph.getRunning() : null;
+        }
+
+        /**
+         * Get the number of tasks on the longest chain of tasks that have yet to complete.
+         *
+         * @return the number of tasks
+         */
+        public int getCriticalPath() {
+            TaskGraph graph = this.graph;
+            return graph != null ? graph.getCriticalPath() : 0;
         }
 
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,268 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.install;
+
+import com.skcraft.launcher.persistence.Persistence;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.java.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * A launcher-wide store of downloaded modpack files, addressed by their
+ * SHA-1 hash and laid out like the assets objects directory
+ * (<code>xx/hash</code>), so that modpacks sharing the same files only
+ * download them once.
+ * <p>
+ * Files that are never edited in place, such as mods, are hard linked
+ * between the store and instances, so they are only kept on disk once.
+ * Other files get their own copy, so that an edit doesn't show up in
+ * other instances or in the store. Libraries and game JARs already have
+ * a shared directory of their own and are not stored here.
+ * <p>
+ * Objects that no install has used for a while are removed by
+ * {@link #prune()}.
+ */
+@Log
+public class ObjectStore {
+
+    /**
+     * Objects that no install has used for this long are removed.
+     */
+    private static final long MAX_UNUSED_AGE = TimeUnit.DAYS.toMillis(30);
+
+    /**
+     * How a file is shared with the store.
+     */
+    public enum Sharing {
+        /**
+         * The file is not stored.
+         */
+        NONE,
+        /**
+         * The file may be edited, so the store and the instance each have
+         * their own copy.
+         */
+        COPY,
+        /**
+         * The file is never edited in place, so the store and the instance
+         * share it with a hard link where the file system allows it.
+         */
+        LINK
+    }
+
+    @Getter
+    private final File dir;
+    private final File indexPath;
+    private Index index;
+    private volatile boolean supportsLinks = true;
+
+    /**
+     * Create a new store.
+     *
+     * @param dir the directory to store objects in
+     */
+    public ObjectStore(@NonNull File dir) {
+        this.dir = dir;
+        this.indexPath = new File(dir, "index.json");
+    }
+
+    /**
+     * Get the path of the object with the given hash.
+     *
+     * @param hash the SHA-1 hash
+     * @return the file, which may not exist
+     */
+    public File getObjectPath(@NonNull String hash) {
+        hash = hash.toLowerCase();
+        return new File(dir, hash.substring(0, 2) + "/" + hash);
+    }
+
+    /**
+     * Check whether an intact object with the given hash is stored. Objects
+     * that were modified since they were stored are removed.
+     *
+     * @param hash the SHA-1 hash
+     * @return true if the object exists
+     * @throws IOException on I/O error
+     */
+    public boolean contains(@NonNull String hash) throws IOException {
+        hash = hash.toLowerCase();
+        File object = getObjectPath(hash);
+        if (!object.isFile()) {
+            return false;
+        }
+
+        // Only re-read if the object's size or time changed since it was indexed
+        String actual = getIndex().getFiles().getHash(hash, object);
+        if (!hash.equalsIgnoreCase(actual)) {
+            log.log(Level.WARNING, "Removing modified object {0} from the object store", hash);
+            object.delete();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Create the given file from a stored object.
+     *
+     * @param hash    the SHA-1 hash
+     * @param target  the file to create
+     * @param sharing how the file is shared with the store
+     * @return true if the object was stored and the file was created
+     * @throws IOException on I/O error
+     */
+    public boolean materialize(@NonNull String hash, @NonNull File target, @NonNull Sharing sharing)
+            throws IOException {
+        if (sharing == Sharing.NONE || !contains(hash)) {
+            return false;
+        }
+
+        File object = getObjectPath(hash);
+        target.getParentFile().mkdirs();
+        target.delete();
+        transfer(object, target, sharing);
+        touch(hash);
+        return true;
+    }
+
+    /**
+     * Add a file to the store. The file must already have been verified to
+     * match the given hash.
+     *
+     * @param hash    the SHA-1 hash of the file
+     * @param file    the file
+     * @param sharing how the file is shared with the store
+     * @throws IOException on I/O error
+     */
+    public void put(@NonNull String hash, @NonNull File file, @NonNull Sharing sharing) throws IOException {
+        if (sharing == Sharing.NONE) {
+            return;
+        }
+        if (contains(hash)) {
+            touch(hash);
+            return;
+        }
+
+        hash = hash.toLowerCase();
+        File object = getObjectPath(hash);
+        File tempFile = new File(object.getParentFile(), object.getName() + "." + UUID.randomUUID() + ".tmp");
+        object.getParentFile().mkdirs();
+
+        try {
+            transfer(file, tempFile, sharing);
+            Files.move(tempFile.toPath(), object.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            getIndex().getFiles().put(hash, object, hash);
+            touch(hash);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Remove objects that no install has used recently.
+     */
+    public void prune() {
+        Index index = getIndex();
+        long now = System.currentTimeMillis();
+
+        File[] prefixes = dir.listFiles();
+        if (prefixes != null) {
+            for (File prefix : prefixes) {
+                File[] objects = prefix.isDirectory() ? prefix.listFiles() : null;
+                if (objects == null) {
+                    continue;
+                }
+
+                for (File object : objects) {
+                    String hash = object.getName();
+                    Long used = index.getLastUsed().get(hash);
+                    if (used == null) {
+                        // Stored before use was tracked, or left from an interrupted put
+                        index.getLastUsed().put(hash, now);
+                    } else if (now - used > MAX_UNUSED_AGE) {
+                        log.info("Removing unused object " + hash + " from the object store");
+                        object.delete();
+                    }
+                }
+            }
+        }
+
+        // Forget objects that are gone
+        for (Iterator<String> it = index.getLastUsed().keySet().iterator(); it.hasNext(); ) {
+            if (!getObjectPath(it.next()).isFile()) {
+                it.remove();
+            }
+        }
+        index.getFiles().retainAll(index.getLastUsed().keySet());
+
+        save();
+    }
+
+    /**
+     * Write the index of the store, which keeps the stored objects' hashes
+     * and when they were last used.
+     */
+    public void save() {
+        Index index = getIndex();
+        try {
+            // FileIndex changes under its own lock
+            synchronized (index.getFiles()) {
+                Persistence.write(indexPath, index);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to write " + indexPath.getAbsolutePath(), e);
+        }
+    }
+
+    private synchronized Index getIndex() {
+        if (index == null) {
+            index = Persistence.read(indexPath, Index.class);
+        }
+        return index;
+    }
+
+    private void touch(String hash) {
+        getIndex().getLastUsed().put(hash.toLowerCase(), System.currentTimeMillis());
+    }
+
+    private void transfer(File from, File to, Sharing sharing) throws IOException {
+        if (sharing == Sharing.LINK && supportsLinks) {
+            try {
+                Files.createLink(to.toPath(), from.toPath());
+                return;
+            } catch (UnsupportedOperationException e) {
+                supportsLinks = false;
+            } catch (IOException e) {
+                log.log(Level.FINE, "Could not link " + from + " to " + to + ", copying instead", e);
+            }
+        }
+
+        Files.copy(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The persisted state of the store.
+     */
+    @Data
+    public static class Index {
+        private FileIndex files = new FileIndex();
+        private ConcurrentHashMap<String, Long> lastUsed = new ConcurrentHashMap<String, Long>();
+    }
+
+}
@@ -20,6 +20,8 @@ import java.io.File;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -140,6 +142,21 @@ public class ProcessorTask implements InstallTask {
         }
     }
 
+    @Override
+    public Collection<File> getInputs() {
+        List<File> inputs = new ArrayList<File>();
+        for (DownloadableFile.LocalFile localFile : localFiles.values()) {
+            inputs.add(localFile.getLocation());
+        }
+        return inputs;
+    }
+
+    @Override
+    public Collection<File> getOutputs() {
+        // Outputs are only known once arguments are resolved, and processors often read each other's outputs
+        return null;
+    }
+
     @Override
     public double getProgress() {
         return progress;
@@ -0,0 +1,307 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.install;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.skcraft.concurrency.ProgressObservable;
+import com.skcraft.launcher.util.HttpRequest;
+import lombok.NonNull;
+import lombok.extern.java.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a file as several byte ranges at once, each of which is written
+ * into place in a preallocated file. If the server does not support ranges,
+ * the file is downloaded in one piece instead.
+ * <p>
+ * The file is hashed in order while it is written. Data that arrives for a
+ * range after the one being hashed is read back from the file once the
+ * ranges before it are done, which is usually still in the page cache.
+ */
+@Log
+class SegmentedDownload implements ProgressObservable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+)$");
+
+    private final URL url;
+    private final File file;
+    private final int segmentCount;
+    private final HashFunction hf;
+    private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+    private final List<ChannelOutputStream> streams = new ArrayList<ChannelOutputStream>();
+    private volatile long length = -1;
+    private Hasher hasher;
+    private FileChannel hashChannel;
+    private long hashed;
+
+    /**
+     * Create a new download.
+     *
+     * @param url          the URL
+     * @param file         the file to save to
+     * @param segmentCount the number of ranges to download at once
+     * @param hf           the hash function to hash the file with, or null to not hash it
+     */
+    SegmentedDownload(@NonNull URL url, @NonNull File file, int segmentCount, HashFunction hf) {
+        this.url = url;
+        this.file = file;
+        this.segmentCount = Math.max(1, segmentCount);
+        this.hf = hf;
+    }
+
+    /**
+     * Download the file.
+     *
+     * @param expectedSize the expected size of the file, used to size the first range
+     * @return the hash of the file, or null if no hash function was given
+     * @throws IOException          on I/O error
+     * @throws InterruptedException on interruption
+     */
+    HashCode download(long expectedSize) throws IOException, InterruptedException {
+        long firstLength = Math.max(1, expectedSize / segmentCount);
+        HttpRequest first = HttpRequest.get(url).header("Range", "bytes=0-" + (firstLength - 1));
+        segments.add(new Segment(first, firstLength));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        ExecutorService executor = null;
+
+        try {
+            FileChannel channel = raf.getChannel();
+            synchronized (this) {
+                hasher = hf != null ? hf.newHasher() : null;
+                hashChannel = channel;
+                hashed = 0;
+            }
+            first.execute().expectResponseCode(200, 206);
+
+            if (first.getResponseCode() != 206) {
+                // No range support, so this is the whole file
+                raf.setLength(0);
+                first.saveContent(createStream(channel, 0, Long.MAX_VALUE));
+                return finishHash(-1);
+            }
+
+            long[] range = parseContentRange(first);
+            if (range[0] != 0) {
+                first.close();
+                throw new IOException("Got unexpected range " + range[0] + "-" + range[1] + " from " + url);
+            }
+            length = range[2];
+            raf.setLength(length);
+
+            long start = range[1] + 1;
+            long remaining = length - start;
+            int count = segmentCount - 1;
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            ChannelOutputStream firstStream = createStream(channel, 0, start);
+
+            if (remaining > 0) {
+                executor = Executors.newFixedThreadPool(count);
+                long segmentLength = (remaining + count - 1) / count;
+
+                for (long offset = start; offset < length; offset += segmentLength) {
+                    final long from = offset;
+                    final long to = Math.min(length, offset + segmentLength) - 1;
+                    final ChannelOutputStream stream = createStream(channel, from, to + 1);
+                    final HttpRequest request = HttpRequest.get(url).header("Range", "bytes=" + from + "-" + to);
+                    segments.add(new Segment(request, to - from + 1));
+
+                    futures.add(executor.submit(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            request.execute().expectResponseCode(206);
+                            long[] range = parseContentRange(request);
+                            if (range[0] != from || range[1] != to) {
+                                request.close();
+                                throw new IOException("Got range " + range[0] + "-" + range[1] +
+                                        " instead of " + from + "-" + to + " from " + url);
+                            }
+                            request.saveContent(stream);
+                            return null;
+                        }
+                    }));
+                }
+            }
+
+            first.saveContent(firstStream);
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("Failed to download part of " + url, e.getCause());
+                }
+            }
+
+            log.log(Level.INFO, "Downloaded {0} in {1} parts", new Object[]{url, segments.size()});
+            return finishHash(length);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            raf.close();
+        }
+    }
+
+    private synchronized ChannelOutputStream createStream(FileChannel channel, long start, long end) {
+        ChannelOutputStream stream = new ChannelOutputStream(channel, start, end);
+        streams.add(stream);
+        return stream;
+    }
+
+    /**
+     * Hash what was just written to the file, and then whatever else was
+     * written after it that is now next in order.
+     */
+    private synchronized void written(ChannelOutputStream stream, long from, byte[] b, int off, int len)
+            throws IOException {
+        stream.position = from + len;
+        if (hasher == null) {
+            return;
+        }
+
+        if (from == hashed) {
+            hasher.putBytes(b, off, len);
+            hashed += len;
+        }
+
+        long frontier = getFrontier();
+        if (hashed < frontier) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, frontier - hashed));
+            while (hashed < frontier) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), frontier - hashed));
+                int read = hashChannel.read(buffer, hashed);
+                if (read <= 0) {
+                    throw new IOException("Could not read back " + file + " at " + hashed);
+                }
+                hasher.putBytes(buffer.array(), 0, read);
+                hashed += read;
+            }
+        }
+    }
+
+    /**
+     * Get the position up to which the file has been written with no gaps.
+     */
+    private long getFrontier() {
+        long frontier = 0;
+        for (ChannelOutputStream stream : streams) {
+            if (stream.start > frontier) {
+                break;
+            }
+            frontier = Math.max(frontier, stream.position);
+            if (stream.position < stream.end) {
+                break;
+            }
+        }
+        return frontier;
+    }
+
+    private synchronized HashCode finishHash(long length) throws IOException {
+        if (hasher == null) {
+            return null;
+        }
+        if (length >= 0 && hashed != length) {
+            throw new IOException("Only hashed " + hashed + " of " + length + " bytes of " + file);
+        }
+        return hasher.hash();
+    }
+
+    private long[] parseContentRange(HttpRequest request) throws IOException {
+        String field = request.getResponseHeader("Content-Range");
+        Matcher m = field != null ? CONTENT_RANGE.matcher(field.trim()) : null;
+        if (m == null || !m.matches()) {
+            request.close();
+            throw new IOException("Invalid Content-Range '" + field + "' from " + url);
+        }
+        return new long[]{Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), Long.parseLong(m.group(3))};
+    }
+
+    @Override
+    public double getProgress() {
+        long length = this.length;
+        if (length <= 0) {
+            return segments.isEmpty() ? -1 : segments.get(0).request.getProgress();
+        }
+
+        double done = 0;
+        for (Segment segment : segments) {
+            done += Math.max(0, segment.request.getProgress()) * segment.length;
+        }
+        return Math.min(1, done / length);
+    }
+
+    @Override
+    public String getStatus() {
+        return null;
+    }
+
+    private static class Segment {
+        private final HttpRequest request;
+        private final long length;
+
+        private Segment(HttpRequest request, long length) {
+            this.request = request;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Writes one range of the file to a file channel, which lets several
+     * threads write to different parts of the same file.
+     */
+    private class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private long position;
+
+        private ChannelOutputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.position = start;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long from = position;
+            long to = from;
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                to += channel.write(buffer, to);
+            }
+            written(this, from, b, off, len);
+        }
+    }
+
+}
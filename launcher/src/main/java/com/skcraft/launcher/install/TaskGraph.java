@@ -0,0 +1,340 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.install;
+
+import com.skcraft.launcher.Launcher;
+import com.skcraft.launcher.util.Metrics;
+import lombok.extern.java.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+
+/**
+ * Runs install tasks in parallel while honoring the order implied by the
+ * files that they read and write.
+ * <p>
+ * A task that reads a file runs after the last task queued before it that
+ * writes the file, and before the next task that writes it again. Tasks
+ * that write the same file run in the order they were queued. A task that
+ * can't tell which files it writes runs after every task queued before it
+ * and before every task queued after it. Tasks that read a file that is
+ * still being downloaded are held back until the download completes.
+ */
+@Log
+class TaskGraph {
+
+    private final Launcher launcher;
+    private final ExecutorService executor;
+    private final Metrics metrics;
+    private final List<Node> nodes = new ArrayList<Node>();
+    private final Map<File, List<Node>> awaitingDownload = new HashMap<File, List<Node>>();
+    private final Set<Node> running = new HashSet<Node>();
+    private int submitted;
+    private int settled;
+    private int finished;
+    private Exception failure;
+
+    /**
+     * Create a new graph.
+     *
+     * @param tasks            the tasks, in the order they were queued
+     * @param pendingDownloads the files that are yet to be downloaded
+     * @param launcher         the launcher
+     * @param executor         the executor to run tasks on
+     * @param metrics          the metrics to record task times in
+     */
+    TaskGraph(Collection<InstallTask> tasks, Set<File> pendingDownloads, Launcher launcher,
+              ExecutorService executor, Metrics metrics) {
+        this.launcher = launcher;
+        this.executor = executor;
+        this.metrics = metrics;
+
+        Map<File, Node> writers = new HashMap<File, Node>();
+        Map<File, List<Node>> readers = new HashMap<File, List<Node>>();
+        List<Node> sinceBarrier = new ArrayList<Node>();
+        Node barrier = null;
+
+        for (InstallTask task : tasks) {
+            Node node = new Node(task);
+            Collection<File> outputs = task.getOutputs();
+
+            if (barrier != null) {
+                barrier.addDependent(node);
+            }
+
+            // Read the file as written by the tasks queued before this one
+            for (File input : task.getInputs()) {
+                Node writer = writers.get(input);
+                if (writer != null) {
+                    writer.addDependent(node);
+                }
+
+                List<Node> fileReaders = readers.get(input);
+                if (fileReaders == null) {
+                    fileReaders = new ArrayList<Node>();
+                    readers.put(input, fileReaders);
+                }
+                fileReaders.add(node);
+
+                if (pendingDownloads.contains(input)) {
+                    List<Node> waiting = awaitingDownload.get(input);
+                    if (waiting == null) {
+                        waiting = new ArrayList<Node>();
+                        awaitingDownload.put(input, waiting);
+                    }
+                    waiting.add(node);
+                    node.remaining++;
+                }
+            }
+
+            if (outputs == null) {
+                for (Node previous : sinceBarrier) {
+                    previous.addDependent(node);
+                }
+                sinceBarrier.clear();
+                barrier = node;
+            } else {
+                for (File output : outputs) {
+                    Node previous = writers.put(output, node);
+                    if (previous != null && previous != node) {
+                        previous.addDependent(node);
+                    }
+
+                    // Don't overwrite the file before earlier readers are done with it
+                    List<Node> fileReaders = readers.remove(output);
+                    if (fileReaders != null) {
+                        for (Node reader : fileReaders) {
+                            if (reader != node && reader != previous) {
+                                reader.addDependent(node);
+                            }
+                        }
+                    }
+                }
+                sinceBarrier.add(node);
+            }
+
+            nodes.add(node);
+        }
+
+        computeHeights();
+    }
+
+    /**
+     * Compute the length of the longest chain of tasks that starts at each task.
+     */
+    private void computeHeights() {
+        Map<Node, Integer> incoming = new HashMap<Node, Integer>();
+        for (Node node : nodes) {
+            for (Node dependent : node.dependents) {
+                Integer count = incoming.get(dependent);
+                incoming.put(dependent, count != null ? count + 1 : 1);
+            }
+        }
+
+        Deque<Node> ready = new ArrayDeque<Node>();
+        for (Node node : nodes) {
+            if (!incoming.containsKey(node)) {
+                ready.add(node);
+            }
+        }
+
+        List<Node> order = new ArrayList<Node>();
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            order.add(node);
+            for (Node dependent : node.dependents) {
+                int count = incoming.get(dependent) - 1;
+                incoming.put(dependent, count);
+                if (count == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (order.size() != nodes.size()) {
+            throw new IllegalStateException("Install tasks have cyclic dependencies");
+        }
+
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Node node = order.get(i);
+            for (Node dependent : node.dependents) {
+                node.height = Math.max(node.height, dependent.height + 1);
+            }
+        }
+    }
+
+    /**
+     * Start every task that is ready to run.
+     */
+    synchronized void start() {
+        for (Node node : nodes) {
+            if (node.remaining == 0) {
+                submit(node);
+            }
+        }
+    }
+
+    /**
+     * Release the tasks that were waiting for the given file to be downloaded.
+     *
+     * @param file the downloaded file
+     */
+    synchronized void downloaded(File file) {
+        List<Node> waiting = awaitingDownload.remove(file);
+        if (waiting != null) {
+            for (Node node : waiting) {
+                release(node);
+            }
+        }
+    }
+
+    /**
+     * Wait for all started tasks to finish.
+     *
+     * @throws Exception the first exception thrown by a task
+     */
+    synchronized void await() throws Exception {
+        while (submitted > settled) {
+            wait(100);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Throw an exception if any task did not run.
+     *
+     * @throws IOException thrown if a task did not run
+     */
+    synchronized void checkComplete() throws IOException {
+        if (finished < nodes.size()) {
+            throw new IOException((nodes.size() - finished) + " install task(s) could not be run");
+        }
+    }
+
+    /**
+     * Get the number of tasks that have completed.
+     *
+     * @return the number of tasks
+     */
+    synchronized int getFinished() {
+        return finished;
+    }
+
+    /**
+     * Get the running task that is at the start of the longest remaining chain of tasks.
+     *
+     * @return the task, or null if no task is running
+     */
+    synchronized InstallTask getRunning() {
+        Node longest = null;
+        for (Node node : running) {
+            if (longest == null || node.height > longest.height) {
+                longest = node;
+            }
+        }
+        return longest != null ? longest.task : null;
+    }
+
+    /**
+     * Get the number of tasks on the longest chain of tasks that have yet to complete.
+     *
+     * @return the number of tasks
+     */
+    synchronized int getCriticalPath() {
+        int length = 0;
+        for (Node node : nodes) {
+            if (!node.done) {
+                length = Math.max(length, node.height);
+            }
+        }
+        return length;
+    }
+
+    private void release(Node node) {
+        if (--node.remaining == 0) {
+            submit(node);
+        }
+    }
+
+    private void submit(final Node node) {
+        if (failure != null) {
+            return;
+        }
+
+        submitted++;
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                TaskGraph.this.run(node);
+            }
+        });
+    }
+
+    private void run(Node node) {
+        synchronized (this) {
+            if (failure != null) {
+                settled++;
+                notifyAll();
+                return;
+            }
+            running.add(node);
+        }
+
+        long start = System.nanoTime();
+        try {
+            node.task.execute(launcher);
+            metrics.count("install.tasks");
+            metrics.record("install.taskTime." + node.task.getClass().getSimpleName(), System.nanoTime() - start);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "Failed to execute task: " + node.task, e);
+            synchronized (this) {
+                running.remove(node);
+                settled++;
+                if (failure == null) {
+                    failure = e;
+                }
+                notifyAll();
+            }
+            return;
+        }
+
+        synchronized (this) {
+            running.remove(node);
+            node.done = true;
+            settled++;
+            finished++;
+            for (Node dependent : node.dependents) {
+                release(dependent);
+            }
+            notifyAll();
+        }
+    }
+
+    private static class Node {
+        private final InstallTask task;
+        private final List<Node> dependents = new ArrayList<Node>();
+        private int remaining;
+        private int height = 1;
+        private boolean done;
+
+        private Node(InstallTask task) {
+            this.task = task;
+        }
+
+        private void addDependent(Node node) {
+            dependents.add(node);
+            node.remaining++;
+        }
+    }
+
+}
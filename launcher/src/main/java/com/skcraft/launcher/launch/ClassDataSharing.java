@@ -0,0 +1,103 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.skcraft.launcher.launch.runtime.JavaRuntime;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.java.Log;
+
+import java.io.File;
+import java.io.FileFilter;
+
+/**
+ * Sets up a dynamic class data sharing (AppCDS) archive for a launch, so
+ * that the game JVM can map already parsed and verified classes from the
+ * archive instead of loading them from the JARs on every start.
+ * <p>
+ * The first launch with a given runtime and classpath records the loaded
+ * classes into an archive when the game exits, and later launches use it.
+ * A change to the runtime, classpath or main class results in a new archive.
+ */
+@Log
+public class ClassDataSharing {
+
+    /**
+     * The first Java version that can create dynamic archives.
+     */
+    public static final int MIN_JAVA_VERSION = 13;
+
+    @Getter
+    private final File dir;
+
+    /**
+     * Create a new instance.
+     *
+     * @param dir the directory to keep archives in
+     */
+    public ClassDataSharing(@NonNull File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Add the flags to use or create an archive for the launch.
+     *
+     * @param builder the process builder, with its classpath and main class set
+     */
+    public void apply(@NonNull JavaProcessBuilder builder) {
+        JavaRuntime runtime = builder.getRuntime();
+        if (runtime == null || runtime.getMajorVersion() < MIN_JAVA_VERSION) {
+            log.info("Not using class data sharing because the Java runtime is unknown or older than " +
+                    MIN_JAVA_VERSION);
+            return;
+        }
+
+        final File archive = new File(dir, createKey(builder) + ".jsa");
+
+        if (archive.isFile() && archive.length() > 0) {
+            log.info("Using class data sharing archive " + archive.getAbsolutePath());
+            builder.getFlags().add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            builder.getFlags().add("-Xshare:auto");
+        } else {
+            // Archives for an older classpath are no longer of use
+            File[] outdated = dir.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return file.getName().endsWith(".jsa") && !file.equals(archive);
+                }
+            });
+            if (outdated != null) {
+                for (File file : outdated) {
+                    file.delete();
+                }
+            }
+
+            dir.mkdirs();
+            log.info("Creating class data sharing archive " + archive.getAbsolutePath() + " when the game exits");
+            builder.getFlags().add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+        }
+    }
+
+    private static String createKey(JavaProcessBuilder builder) {
+        JavaRuntime runtime = builder.getRuntime();
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(runtime.getDir().getAbsolutePath() + "\n", Charsets.UTF_8);
+        hasher.putString(String.valueOf(runtime.getVersion()) + "\n", Charsets.UTF_8);
+        hasher.putString(builder.buildClassPath() + "\n", Charsets.UTF_8);
+        // The JVM won't use an archive once a JAR's size or time changes, so neither should the key
+        for (File file : builder.getClassPath()) {
+            hasher.putLong(file.length());
+            hasher.putLong(file.lastModified());
+        }
+        hasher.putString(String.valueOf(builder.getMainClass()), Charsets.UTF_8);
+        return hasher.hash().toString();
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.skcraft.launcher.util.SharedLocale;
+
+/**
+ * The garbage collectors that a memory profile can choose between.
+ */
+public enum GarbageCollector {
+
+    /**
+     * Let the profile pick based on the runtime and heap size.
+     */
+    AUTOMATIC,
+    /**
+     * Don't pass any collector flags, leaving the choice to the JVM.
+     */
+    DEFAULT,
+    G1,
+    ZGC,
+    /**
+     * Only present in some builds of OpenJDK, so never picked automatically.
+     */
+    SHENANDOAH;
+
+    @Override
+    public String toString() {
+        return SharedLocale.tr("options.gc." + name().toLowerCase());
+    }
+
+}
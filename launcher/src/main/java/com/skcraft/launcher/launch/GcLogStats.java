@@ -0,0 +1,129 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.google.common.base.Charsets;
+import lombok.Data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A summary of the garbage collector log written by one run of the game.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class GcLogStats {
+
+    /**
+     * Matches unified logging (Java 9+) lines, such as
+     * {@code [1.234s][info][gc] GC(3) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 3.456ms},
+     * {@code [1.234s][info][gc,phases] GC(3) Y: Pause Mark Start 0.012ms} or
+     * {@code [1.234s][info][gc] GC(3) Garbage Collection (Warmup) 24M(2%)->4M(0%)}.
+     */
+    private static final Pattern UNIFIED_PATTERN = Pattern.compile(
+            "GC\\((\\d+)\\) (.+?)(?: (\\d+)M(?:\\([\\d.]+%\\))?->(\\d+)M(?:\\([\\d.]+%\\))?(?:\\((\\d+)M\\))?)?(?: ([\\d.]+)(ms|s))?\\s*$");
+
+    /**
+     * Matches the name of a pause, which generational ZGC prefixes with the generation.
+     */
+    private static final Pattern PAUSE_PATTERN = Pattern.compile("^(?:[YO]: )?Pause ");
+
+    /**
+     * Matches -Xloggc (Java 8) lines, such as
+     * {@code 1.234: [GC (Allocation Failure)  262144K->3424K(1005056K), 0.0034560 secs]}.
+     */
+    private static final Pattern LEGACY_PATTERN = Pattern.compile(
+            "\\[(?:Full )?GC.*?(\\d+)([KMG])->(\\d+)([KMG])\\((\\d+)([KMG])\\), ([\\d.]+) secs\\]");
+
+    private long time;
+    private GarbageCollector collector;
+    private int maxHeap;
+    private int collections;
+    private int pauses;
+    private double totalPauseMillis;
+    private double maxPauseMillis;
+    private int peakHeapUsed;
+    private int peakHeapCommitted;
+
+    /**
+     * Read the stats from a log file.
+     *
+     * @param file the log file
+     * @return the stats
+     * @throws IOException on I/O error
+     */
+    public static GcLogStats parse(File file) throws IOException {
+        GcLogStats stats = new GcLogStats();
+        Set<String> ids = new HashSet<String>();
+        Set<String> pauses = new HashSet<String>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher m = UNIFIED_PATTERN.matcher(line);
+                if (m.find()) {
+                    ids.add(m.group(1));
+                    if (m.group(3) != null) {
+                        stats.addHeap(Integer.parseInt(m.group(3)), m.group(5) != null ? Integer.parseInt(m.group(5)) : 0);
+                    }
+                    // The same pause may be logged under both gc and gc+phases
+                    if (m.group(6) != null && PAUSE_PATTERN.matcher(m.group(2)).find()
+                            && pauses.add(m.group(1) + " " + m.group(2))) {
+                        double duration = Double.parseDouble(m.group(6));
+                        stats.addPause(m.group(7).equals("s") ? duration * 1000 : duration);
+                    }
+                    continue;
+                }
+
+                m = LEGACY_PATTERN.matcher(line);
+                if (m.find()) {
+                    stats.collections++;
+                    stats.addHeap(toMegabytes(m.group(1), m.group(2)), toMegabytes(m.group(5), m.group(6)));
+                    stats.addPause(Double.parseDouble(m.group(7)) * 1000);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        stats.collections += ids.size();
+        return stats;
+    }
+
+    private void addHeap(int used, int committed) {
+        peakHeapUsed = Math.max(peakHeapUsed, used);
+        peakHeapCommitted = Math.max(peakHeapCommitted, committed);
+    }
+
+    private void addPause(double millis) {
+        pauses++;
+        totalPauseMillis += millis;
+        maxPauseMillis = Math.max(maxPauseMillis, millis);
+    }
+
+    private static int toMegabytes(String value, String unit) {
+        long amount = Long.parseLong(value);
+        if (unit.equals("K")) {
+            return (int) (amount / 1024);
+        } else if (unit.equals("G")) {
+            return (int) (amount * 1024);
+        } else {
+            return (int) amount;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.skcraft.launcher.model.minecraft.JavaVersion;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a launch command that only depend on the installed version
+ * of an instance, worked out once and saved so that launching doesn't have
+ * to read the version manifest and asset index again.
+ * <p>
+ * Argument templates have already been filtered by their rules, but still
+ * contain placeholders for the session and other per-launch values.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LaunchPlan {
+
+    /**
+     * Describes everything other than the input files that the plan
+     * depends on, such as the launcher version and the environment.
+     */
+    private String key;
+
+    /**
+     * The size and modification time of each file that the plan was made from.
+     */
+    private Map<String, String> inputs = new HashMap<String, String>();
+
+    private String versionId;
+    private String assetId;
+    private int minimumLauncherVersion;
+    private JavaVersion javaVersion;
+    private String mainClass;
+    private List<String> classPath = new ArrayList<String>();
+    private String nativesDir;
+    private String virtualAssetsDir;
+    private String dockIcon;
+    private List<String> jvmArguments = new ArrayList<String>();
+    private List<String> gameArguments = new ArrayList<String>();
+    private String loggingArgument;
+
+}
@@ -0,0 +1,277 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.skcraft.concurrency.DefaultProgress;
+import com.skcraft.concurrency.ProgressObservable;
+import com.skcraft.launcher.*;
+import com.skcraft.launcher.model.minecraft.*;
+import com.skcraft.launcher.persistence.Persistence;
+import com.skcraft.launcher.util.Environment;
+import com.skcraft.launcher.util.Metrics;
+import com.skcraft.launcher.util.Platform;
+import com.skcraft.launcher.util.SharedLocale;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.java.Log;
+import org.apache.commons.lang.text.StrSubstitutor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.*;
+import java.util.logging.Level;
+
+import static com.skcraft.launcher.util.SharedLocale.tr;
+
+/**
+ * Loads the saved {@link LaunchPlan} of an instance, or makes a new one if
+ * the saved plan is missing or out of date.
+ */
+@Log
+public class LaunchPlanner implements ProgressObservable {
+
+    private static final String PLAN_VERSION = "1";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Launcher launcher;
+    private final Instance instance;
+    private final Environment environment;
+    @Getter
+    private final FeatureList.Mutable featureList = new FeatureList.Mutable();
+    @Getter
+    @Setter
+    @NonNull
+    private Metrics metrics = new Metrics("plan");
+    private ProgressObservable progress = new DefaultProgress(0, SharedLocale.tr("runner.preparing"));
+
+    /**
+     * Create a new planner.
+     *
+     * @param launcher    the launcher
+     * @param instance    the instance
+     * @param environment the environment
+     */
+    public LaunchPlanner(@NonNull Launcher launcher, @NonNull Instance instance, @NonNull Environment environment) {
+        this.launcher = launcher;
+        this.instance = instance;
+        this.environment = environment;
+
+        if (launcher.getConfig().getWindowWidth() >= 10) {
+            featureList.addFeature("has_custom_resolution", true);
+        }
+    }
+
+    /**
+     * Get the path of the saved plan.
+     *
+     * @param instance the instance
+     * @return the path
+     */
+    public static File getPlanPath(Instance instance) {
+        return new File(instance.getDir(), "launch_plan.json");
+    }
+
+    /**
+     * Get the plan, making a new one if needed.
+     *
+     * @return the plan
+     * @throws IOException       on I/O error
+     * @throws LauncherException on an error that the user should see
+     */
+    public LaunchPlan getPlan() throws IOException, LauncherException {
+        File path = getPlanPath(instance);
+        LaunchPlan plan = Persistence.read(path, LaunchPlan.class, true);
+
+        if (plan != null && isValid(plan)) {
+            log.info("Using saved launch plan for " + instance.getName());
+            metrics.count("launchPlan.reused");
+            return plan;
+        }
+
+        try (Metrics.Span span = metrics.start("createLaunchPlan")) {
+            plan = createPlan();
+        }
+
+        try {
+            Persistence.write(path, plan);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to save the launch plan to " + path.getAbsolutePath(), e);
+        }
+
+        return plan;
+    }
+
+    private boolean isValid(LaunchPlan plan) {
+        if (!createKey().equals(plan.getKey())) {
+            return false;
+        }
+
+        for (Map.Entry<String, String> entry : plan.getInputs().entrySet()) {
+            if (!stamp(new File(entry.getKey())).equals(entry.getValue())) {
+                return false;
+            }
+        }
+
+        for (String path : plan.getClassPath()) {
+            if (!new File(path).exists()) {
+                return false;
+            }
+        }
+
+        return new File(plan.getNativesDir()).isDirectory() && new File(plan.getVirtualAssetsDir()).isDirectory();
+    }
+
+    private String createKey() {
+        return PLAN_VERSION + "|" + launcher.getVersion() + "|" + environment.getPlatform() + "|" +
+                environment.getArch() + "|" + launcher.getLibrariesDir().getAbsolutePath() + "|" +
+                featureList.hasFeature("has_custom_resolution");
+    }
+
+    private static String stamp(File file) {
+        return file.exists() ? file.length() + ":" + file.lastModified() : "missing";
+    }
+
+    private LaunchPlan createPlan() throws IOException, LauncherException {
+        log.info("Creating launch plan for " + instance.getName() + "...");
+
+        LaunchPlan plan = new LaunchPlan();
+        plan.setKey(createKey());
+
+        // Load manifiests
+        File versionPath = instance.getVersionPath();
+        VersionManifest versionManifest = mapper.readValue(versionPath, VersionManifest.class);
+        plan.getInputs().put(versionPath.getAbsolutePath(), stamp(versionPath));
+
+        // Load assets index
+        AssetsRoot assetsRoot = launcher.getAssets();
+        File assetsFile = assetsRoot.getIndexPath(versionManifest);
+        AssetsIndex assetsIndex;
+        try {
+            assetsIndex = mapper.readValue(assetsFile, AssetsIndex.class);
+        } catch (FileNotFoundException e) {
+            instance.setInstalled(false);
+            Persistence.commitAndForget(instance);
+            throw new LauncherException("Missing assets index " + assetsFile.getAbsolutePath(),
+                    tr("runner.missingAssetsIndex", instance.getTitle(), assetsFile.getAbsolutePath()));
+        } catch (IOException e) {
+            instance.setInstalled(false);
+            Persistence.commitAndForget(instance);
+            throw new LauncherException("Corrupt assets index " + assetsFile.getAbsolutePath(),
+                    tr("runner.corruptAssetsIndex", instance.getTitle(), assetsFile.getAbsolutePath()));
+        }
+        plan.getInputs().put(assetsFile.getAbsolutePath(), stamp(assetsFile));
+
+        // Copy over assets to the tree
+        try {
+            AssetsRoot.AssetsTreeBuilder assetsBuilder = assetsRoot.createAssetsBuilder(versionManifest);
+            progress = assetsBuilder;
+            assetsBuilder.setMetrics(metrics);
+            try (Metrics.Span span = metrics.start("buildAssetsTree")) {
+                plan.setVirtualAssetsDir(assetsBuilder.build().getAbsolutePath());
+            }
+        } catch (LauncherException e) {
+            instance.setInstalled(false);
+            Persistence.commitAndForget(instance);
+            throw e;
+        }
+
+        progress = new DefaultProgress(0.9, SharedLocale.tr("runner.collectingArgs"));
+
+        plan.setVersionId(versionManifest.getId());
+        plan.setAssetId(versionManifest.getAssetId());
+        plan.setMinimumLauncherVersion(versionManifest.getMinimumLauncherVersion());
+        plan.setJavaVersion(versionManifest.getJavaVersion());
+        plan.setMainClass(versionManifest.getMainClass());
+
+        File customJarPath = instance.getCustomJarPath();
+        plan.getInputs().put(customJarPath.getAbsolutePath(), stamp(customJarPath));
+        File jarPath = customJarPath.exists() ? customJarPath : launcher.getJarPath(versionManifest);
+        plan.getClassPath().add(jarPath.getAbsolutePath());
+
+        addLibraries(plan, versionManifest);
+        addArguments(plan, versionManifest);
+
+        // Mac OS X arguments
+        if (environment.getPlatform() == Platform.MAC_OS_X) {
+            File icnsPath = assetsIndex.getObjectPath(assetsRoot, "icons/minecraft.icns");
+            if (icnsPath != null) {
+                plan.setDockIcon(icnsPath.getAbsolutePath());
+            }
+        }
+
+        return plan;
+    }
+
+    private void addLibraries(LaunchPlan plan, VersionManifest versionManifest) throws IOException, LauncherException {
+        Map<File, List<String>> natives = new LinkedHashMap<File, List<String>>();
+
+        for (Library library : versionManifest.getLibraries()) {
+            if (!library.matches(environment)) {
+                continue;
+            }
+
+            File path = new File(launcher.getLibrariesDir(), library.getPath(environment));
+
+            if (path.exists()) {
+                Library.Extract extract = library.getExtract();
+                if (extract != null) {
+                    natives.put(path, extract.getExclude());
+                    // The extracted directory is picked by the JARs' contents, so check them again
+                    plan.getInputs().put(path.getAbsolutePath(), stamp(path));
+                } else {
+                    plan.getClassPath().add(path.getAbsolutePath());
+                }
+            } else {
+                instance.setInstalled(false);
+                Persistence.commitAndForget(instance);
+                throw new LauncherException("Missing library " + library.getName(),
+                        tr("runner.missingLibrary", instance.getTitle(), library.getName()));
+            }
+        }
+
+        plan.setNativesDir(launcher.getNativesCache().extract(natives).getAbsolutePath());
+    }
+
+    private void addArguments(LaunchPlan plan, VersionManifest versionManifest) {
+        for (GameArgument arg : versionManifest.getArguments().getJvmArguments()) {
+            if (arg.shouldApply(environment, featureList)) {
+                plan.getJvmArguments().addAll(arg.getValues());
+            }
+        }
+
+        for (GameArgument arg : versionManifest.getArguments().getGameArguments()) {
+            if (arg.shouldApply(environment, featureList)) {
+                plan.getGameArguments().addAll(arg.getValues());
+            }
+        }
+
+        if (versionManifest.getLogging() != null) {
+            log.info("Logging config present, log4j2 bug likely mitigated");
+
+            VersionManifest.LoggingConfig config = versionManifest.getLogging().getClient();
+            File configFile = new File(launcher.getLibrariesDir(), config.getFile().getId());
+            StrSubstitutor loggingSub = new StrSubstitutor(ImmutableMap.of("path", configFile.getAbsolutePath()));
+
+            plan.setLoggingArgument(loggingSub.replace(config.getArgument()));
+        }
+    }
+
+    @Override
+    public double getProgress() {
+        return progress.getProgress();
+    }
+
+    @Override
+    public String getStatus() {
+        return progress.getStatus();
+    }
+
+}
@@ -26,20 +26,15 @@ import com.skcraft.launcher.util.SharedLocale;
 import com.skcraft.launcher.util.SwingExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
-import org.apache.commons.io.FileUtils;
 
 import javax.annotation.Nullable;
 import javax.swing.*;
 import java.awt.*;
-import java.io.File;
-import java.io.IOException;
 import java.util.Date;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.function.BiPredicate;
-import java.util.logging.Level;
 
-import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static com.skcraft.launcher.util.SharedLocale.tr;
 
 @Log
@@ -124,10 +119,8 @@ public class LaunchSupervisor {
     }
 
     private void launch(Window window, Instance instance, Session session, final LaunchListener listener) {
-        final File extractDir = launcher.createExtractDir();
-
         // Get the process
-        Runner task = new Runner(launcher, instance, session, extractDir, new RuntimeVerifier(instance));
+        Runner task = new Runner(launcher, instance, session, new RuntimeVerifier(instance));
         ObservableFuture<Process> processFuture = new ObservableFuture<Process>(
                 launcher.getExecutor().submit(task), task);
 
@@ -152,15 +145,8 @@ public class LaunchSupervisor {
                 processFuture, new LaunchProcessHandler(launcher), launcher.getExecutor());
         SwingHelper.addErrorDialogCallback(null, future);
 
-        // Clean up at the very end
-        future.addListener(() -> {
-            try {
-                log.info("Process ended; cleaning up " + extractDir.getAbsolutePath());
-                FileUtils.deleteDirectory(extractDir);
-            } catch (IOException e) {
-                log.log(Level.WARNING, "Failed to clean up " + extractDir.getAbsolutePath(), e);
-            }
-        }, sameThreadExecutor());
+        // Summarize the collector log once the game has closed
+        future.addListener(() -> MemoryProfiler.recordRun(instance), launcher.getExecutor());
 
         // Hook up launch listener
         Futures.addCallback(future, new FutureCallback<ProcessConsoleFrame>() {
@@ -0,0 +1,50 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The heap size and garbage collector flags chosen for a launch, along with
+ * what they were chosen from and how the collector did on recent runs.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MemoryProfile {
+
+    /**
+     * Total physical memory of the host in megabytes, or 0 if unknown.
+     */
+    private int hostMemory;
+    private int cores;
+    private int javaVersion;
+    private boolean arch64Bit;
+    private int modCount;
+    /**
+     * Total size of the files installed by the modpack, in bytes.
+     */
+    private long contentSize;
+
+    private int minHeap;
+    private int maxHeap;
+    private GarbageCollector collector;
+    private List<String> flags = new ArrayList<String>();
+    /**
+     * The collector log, relative to the content directory, or null if not logging.
+     */
+    private String gcLog;
+
+    /**
+     * Stats of the most recent runs, oldest first.
+     */
+    private List<GcLogStats> runs = new ArrayList<GcLogStats>();
+
+}
@@ -0,0 +1,359 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.skcraft.launcher.Configuration;
+import com.skcraft.launcher.Instance;
+import com.skcraft.launcher.install.InstallLog;
+import com.skcraft.launcher.launch.runtime.JavaRuntime;
+import com.skcraft.launcher.persistence.Persistence;
+import com.sun.management.OperatingSystemMXBean;
+import lombok.NonNull;
+import lombok.extern.java.Log;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Works out the heap size and garbage collector flags for a launch from
+ * the host, the Java runtime and the size of the modpack.
+ * <p>
+ * The chosen profile is saved to the instance directory and, once the game
+ * has closed, the collector log of the run is summarized into it so that
+ * the numbers used here can be tuned against real runs.
+ */
+@Log
+public class MemoryProfiler {
+
+    private static final int MIN_HEAP = 1024;
+    private static final int MAX_AUTOMATIC_HEAP = 16384;
+    private static final int BASE_HEAP = 2048;
+    private static final int HEAP_PER_MOD = 16;
+    private static final int MAX_RUNS = 10;
+    private static final String GC_LOG = "logs/gc.log";
+    private static final Pattern COLLECTOR_FLAG = Pattern.compile("-XX:\\+Use\\w+GC");
+
+    private final Configuration config;
+    private final Instance instance;
+
+    /**
+     * Create a new profiler.
+     *
+     * @param config the launcher configuration
+     * @param instance the instance being launched
+     */
+    public MemoryProfiler(@NonNull Configuration config, @NonNull Instance instance) {
+        this.config = config;
+        this.instance = instance;
+    }
+
+    /**
+     * Get the path of the saved profile.
+     *
+     * @param instance the instance
+     * @return the path
+     */
+    public static File getProfilePath(Instance instance) {
+        return new File(instance.getDir(), "memory_profile.json");
+    }
+
+    /**
+     * Create the profile for a launch.
+     *
+     * @param runtime the runtime, or null if launching the Java on the PATH
+     * @param userFlags the JVM flags set by the user, which take precedence
+     * @return the profile
+     */
+    public MemoryProfile create(JavaRuntime runtime, List<String> userFlags) {
+        boolean automatic = config.isAutomaticMemory();
+        MemorySettings settings = instance.getSettings().getMemorySettings();
+
+        MemoryProfile profile = new MemoryProfile();
+        profile.setHostMemory(getHostMemory());
+        profile.setCores(Runtime.getRuntime().availableProcessors());
+        profile.setJavaVersion(runtime != null ? runtime.getMajorVersion() : 0);
+        profile.setArch64Bit(runtime == null || runtime.is64Bit());
+
+        if (automatic) {
+            measurePack(profile);
+        }
+
+        // Per-instance settings win over both the configuration and the profile
+        int maxHeap = automatic ? recommendMaxHeap(profile) : config.getMaxMemory();
+        if (settings != null && settings.getMaxMemory() > 0) {
+            maxHeap = settings.getMaxMemory();
+        }
+
+        int minHeap = automatic ? roundDown(Math.min(maxHeap, Math.max(MIN_HEAP, maxHeap / 2))) : config.getMinMemory();
+        if (settings != null && settings.getMinMemory() > 0) {
+            minHeap = settings.getMinMemory();
+        }
+
+        if (minHeap <= 0) {
+            minHeap = MIN_HEAP;
+        }
+
+        if (maxHeap <= 0) {
+            maxHeap = MIN_HEAP;
+        }
+
+        if (minHeap > maxHeap) {
+            maxHeap = minHeap;
+        }
+
+        profile.setMinHeap(minHeap);
+        profile.setMaxHeap(maxHeap);
+
+        GarbageCollector collector = settings != null && settings.getGarbageCollector() != null ?
+                settings.getGarbageCollector() : GarbageCollector.AUTOMATIC;
+
+        if (collector == GarbageCollector.AUTOMATIC) {
+            collector = automatic ? recommendCollector(profile) : GarbageCollector.DEFAULT;
+        }
+
+        if (collector != GarbageCollector.DEFAULT && hasCollectorFlag(userFlags)) {
+            log.info("Not choosing a garbage collector because one is set in the JVM arguments");
+            collector = GarbageCollector.DEFAULT;
+        }
+
+        profile.setCollector(getSupportedCollector(collector, profile));
+        addCollectorFlags(profile);
+
+        if (automatic || profile.getCollector() != GarbageCollector.DEFAULT) {
+            addLogFlags(profile);
+        }
+
+        log.info("Memory profile: " + profile.getMinHeap() + "-" + profile.getMaxHeap() + " MB heap, " +
+                profile.getCollector() + " collector (" + profile.getModCount() + " mods, " +
+                profile.getHostMemory() + " MB host memory, " + profile.getCores() + " cores)");
+
+        return profile;
+    }
+
+    /**
+     * Save the profile, keeping the stats of earlier runs.
+     *
+     * @param profile the profile
+     */
+    public void save(MemoryProfile profile) {
+        File path = getProfilePath(instance);
+        MemoryProfile previous = Persistence.read(path, MemoryProfile.class, true);
+        if (previous != null) {
+            profile.setRuns(previous.getRuns());
+        }
+
+        try {
+            Persistence.write(path, profile);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to save the memory profile to " + path.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Add the stats from the collector log of the last run to the saved profile.
+     *
+     * @param instance the instance that was run
+     */
+    public static void recordRun(Instance instance) {
+        File path = getProfilePath(instance);
+        MemoryProfile profile = Persistence.read(path, MemoryProfile.class, true);
+        if (profile == null || profile.getGcLog() == null) {
+            return;
+        }
+
+        File logFile = new File(instance.getContentDir(), profile.getGcLog());
+        if (!logFile.isFile()) {
+            return;
+        }
+
+        try {
+            GcLogStats stats = GcLogStats.parse(logFile);
+            stats.setTime(logFile.lastModified());
+            stats.setCollector(profile.getCollector());
+            stats.setMaxHeap(profile.getMaxHeap());
+
+            List<GcLogStats> runs = profile.getRuns();
+            runs.add(stats);
+            while (runs.size() > MAX_RUNS) {
+                runs.remove(0);
+            }
+
+            Persistence.write(path, profile);
+
+            log.info(String.format("Garbage collection for %s: %d collections, %d pauses totalling %.0f ms " +
+                            "(longest %.1f ms), peak heap %d of %d MB",
+                    instance.getName(), stats.getCollections(), stats.getPauses(), stats.getTotalPauseMillis(),
+                    stats.getMaxPauseMillis(), stats.getPeakHeapUsed(), profile.getMaxHeap()));
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to record garbage collection stats from " + logFile.getAbsolutePath(), e);
+        }
+    }
+
+    private void measurePack(MemoryProfile profile) {
+        File contentDir = instance.getContentDir();
+
+        File[] mods = new File(contentDir, "mods").listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().toLowerCase().endsWith(".jar");
+            }
+        });
+        profile.setModCount(mods != null ? mods.length : 0);
+
+        InstallLog installLog = Persistence.read(new File(instance.getDir(), "install_log.json"), InstallLog.class);
+        Set<String> installed = new HashSet<String>();
+        for (Map.Entry<String, Set<String>> entry : installLog.getEntrySet()) {
+            installed.addAll(entry.getValue());
+        }
+
+        long size = 0;
+        for (String entry : installed) {
+            size += new File(contentDir, entry).length();
+        }
+        profile.setContentSize(size);
+    }
+
+    private static int recommendMaxHeap(MemoryProfile profile) {
+        int wanted = BASE_HEAP + profile.getModCount() * HEAP_PER_MOD +
+                (int) (profile.getContentSize() / 1024 / 1024 / 4);
+
+        int limit;
+        if (!profile.isArch64Bit()) {
+            limit = MIN_HEAP; // 32-bit JVMs can't reserve much more
+        } else if (profile.getHostMemory() <= 0) {
+            limit = 4096;
+        } else {
+            // Leave room for the OS, the launcher and the JVM's own memory
+            int host = profile.getHostMemory();
+            limit = Math.min(host - Math.max(2048, host / 4), MAX_AUTOMATIC_HEAP);
+        }
+
+        return Math.max(MIN_HEAP, roundDown(Math.min(wanted, limit)));
+    }
+
+    private static GarbageCollector recommendCollector(MemoryProfile profile) {
+        if (profile.getJavaVersion() < 8) {
+            return GarbageCollector.DEFAULT;
+        }
+
+        // Generational ZGC keeps pauses short on big heaps, but needs spare cores for its threads
+        if (profile.getJavaVersion() >= 21 && profile.isArch64Bit() &&
+                profile.getMaxHeap() >= 8192 && profile.getCores() >= 6) {
+            return GarbageCollector.ZGC;
+        }
+
+        return GarbageCollector.G1;
+    }
+
+    private static GarbageCollector getSupportedCollector(GarbageCollector collector, MemoryProfile profile) {
+        int version = profile.getJavaVersion();
+
+        switch (collector) {
+            case G1:
+                if (version != 0 && version < 7) {
+                    log.info("G1 needs Java 7 or newer; leaving the collector to the JVM");
+                    return GarbageCollector.DEFAULT;
+                }
+                return collector;
+            case ZGC:
+                if (version < 15 || !profile.isArch64Bit()) {
+                    log.info("ZGC needs a 64-bit Java 15 or newer; using G1 instead");
+                    return getSupportedCollector(GarbageCollector.G1, profile);
+                }
+                return collector;
+            case SHENANDOAH:
+                if (version < 12) {
+                    log.info("Shenandoah needs Java 12 or newer; using G1 instead");
+                    return getSupportedCollector(GarbageCollector.G1, profile);
+                }
+                log.info("Using Shenandoah, which the Java runtime will refuse to start with if it was built without it");
+                return collector;
+            default:
+                return GarbageCollector.DEFAULT;
+        }
+    }
+
+    private static void addCollectorFlags(MemoryProfile profile) {
+        List<String> flags = profile.getFlags();
+
+        switch (profile.getCollector()) {
+            case G1:
+                flags.add("-XX:+UseG1GC");
+                flags.add("-XX:+ParallelRefProcEnabled");
+                flags.add("-XX:MaxGCPauseMillis=50");
+                flags.add("-XX:+UnlockExperimentalVMOptions");
+                flags.add("-XX:G1NewSizePercent=20");
+                flags.add("-XX:G1ReservePercent=20");
+                // Bigger regions mean fewer chunk arrays being allocated as humongous objects
+                flags.add("-XX:G1HeapRegionSize=" + (profile.getMaxHeap() >= 12288 ? 16 : 8) + "M");
+                break;
+            case ZGC:
+                flags.add("-XX:+UseZGC");
+                // Generational ZGC is opt-in on 21 and 22, the default after, and unknown before
+                int version = profile.getJavaVersion();
+                if (version >= 21 && version < 23) {
+                    flags.add("-XX:+ZGenerational");
+                }
+                break;
+            case SHENANDOAH:
+                flags.add("-XX:+UseShenandoahGC");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addLogFlags(MemoryProfile profile) {
+        int version = profile.getJavaVersion();
+        if (version == 0) {
+            return; // Can't tell which log option the runtime takes
+        }
+
+        // Relative to the content directory, which the game is started in
+        new File(instance.getContentDir(), GC_LOG).getParentFile().mkdirs();
+        profile.setGcLog(GC_LOG);
+
+        if (version >= 9) {
+            // ZGC and Shenandoah only log their pause times as phases, and the JVM arguments may pick either
+            boolean phases = profile.getCollector() != GarbageCollector.G1;
+            profile.getFlags().add("-Xlog:" + (phases ? "gc,gc+phases" : "gc") + ":file=" + GC_LOG);
+        } else {
+            profile.getFlags().add("-Xloggc:" + GC_LOG);
+        }
+    }
+
+    private static boolean hasCollectorFlag(List<String> flags) {
+        for (String flag : flags) {
+            if (COLLECTOR_FLAG.matcher(flag).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int getHostMemory() {
+        try {
+            OperatingSystemMXBean bean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            return (int) (bean.getTotalPhysicalMemorySize() / 1024 / 1024);
+        } catch (Exception ignored) {
+            return 0;
+        }
+    }
+
+    private static int roundDown(int megabytes) {
+        return megabytes / 256 * 256;
+    }
+
+}
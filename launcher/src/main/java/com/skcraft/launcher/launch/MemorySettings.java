@@ -16,4 +16,9 @@ public class MemorySettings {
      * Maximum memory in megabytes.
      */
     private int maxMemory;
+
+    /**
+     * The garbage collector to use, or null to let the memory profile choose.
+     */
+    private GarbageCollector garbageCollector;
 }
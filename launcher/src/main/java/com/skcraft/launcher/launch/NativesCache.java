@@ -0,0 +1,170 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.skcraft.launcher.install.FileIndex;
+import com.skcraft.launcher.install.ZipExtract;
+import com.skcraft.launcher.persistence.Persistence;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.java.Log;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Keeps extracted native libraries so that they only have to be extracted
+ * once, rather than on every launch.
+ * <p>
+ * Each set of natives JARs is extracted into a directory named after the
+ * SHA-1 of the JARs and their exclude lists, which is then shared by every
+ * launch of every instance that uses the same natives. Directories are
+ * only ever renamed into place once complete, and are not modified after.
+ * Every use touches the directory's modification time, so that directories
+ * of natives that are no longer used can be pruned.
+ */
+@Log
+public class NativesCache {
+
+    /**
+     * Directories that no launch has used for this long are removed.
+     */
+    private static final long MAX_UNUSED_AGE = TimeUnit.DAYS.toMillis(14);
+
+    /**
+     * Temporary directories older than this are left from an extraction
+     * that did not finish.
+     */
+    private static final long MAX_TEMP_AGE = TimeUnit.HOURS.toMillis(1);
+
+    @Getter
+    private final File dir;
+    private final File indexPath;
+    private FileIndex fileIndex;
+
+    /**
+     * Create a new cache.
+     *
+     * @param dir the directory to keep extracted natives in
+     */
+    public NativesCache(@NonNull File dir) {
+        this.dir = dir;
+        this.indexPath = new File(dir, "file_index.json");
+    }
+
+    /**
+     * Get the directory that holds the extracted contents of the given
+     * natives JARs, extracting them if needed.
+     *
+     * @param jars the natives JARs, with the entry prefixes to exclude from each
+     * @return the directory
+     * @throws IOException on I/O error
+     */
+    public synchronized File extract(@NonNull Map<File, List<String>> jars) throws IOException {
+        if (fileIndex == null) {
+            fileIndex = Persistence.read(indexPath, FileIndex.class);
+        }
+
+        // Key on content so that the same natives at different paths share a directory
+        List<String> parts = new ArrayList<String>();
+        for (Map.Entry<File, List<String>> entry : jars.entrySet()) {
+            File file = entry.getKey();
+            String hash = fileIndex.getHash(file.getAbsolutePath(), file);
+            if (hash == null) {
+                throw new IOException("Missing natives " + file.getAbsolutePath());
+            }
+            List<String> exclude = entry.getValue() != null ? entry.getValue() : Collections.<String>emptyList();
+            parts.add(hash + ":" + Joiner.on(',').join(exclude));
+        }
+        Collections.sort(parts);
+
+        Hasher hasher = Hashing.sha1().newHasher();
+        for (String part : parts) {
+            hasher.putString(part + "\n", Charsets.UTF_8);
+        }
+        File target = new File(dir, hasher.hash().toString());
+
+        try {
+            Persistence.write(indexPath, fileIndex);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to write " + indexPath.getAbsolutePath(), e);
+        }
+
+        if (target.isDirectory()) {
+            log.info("Using extracted natives at " + target.getAbsolutePath());
+            target.setLastModified(System.currentTimeMillis());
+            return target;
+        }
+
+        File tempDir = new File(dir, target.getName() + "." + UUID.randomUUID() + ".tmp");
+        log.info("Extracting natives to " + target.getAbsolutePath() + "...");
+
+        try {
+            tempDir.mkdirs();
+            for (Map.Entry<File, List<String>> entry : jars.entrySet()) {
+                ZipExtract zipExtract = new ZipExtract(Files.asByteSource(entry.getKey()), tempDir);
+                zipExtract.setExclude(entry.getValue());
+                zipExtract.run();
+            }
+
+            // Another launcher may have extracted the same natives in the meantime
+            if (!tempDir.renameTo(target) && !target.isDirectory()) {
+                throw new IOException("Failed to move " + tempDir.getAbsolutePath() + " to " + target.getAbsolutePath());
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to extract natives", e);
+        } finally {
+            if (tempDir.exists()) {
+                FileUtils.deleteDirectory(tempDir);
+            }
+        }
+
+        target.setLastModified(System.currentTimeMillis());
+        return target;
+    }
+
+    /**
+     * Remove the directories of natives that have not been used recently,
+     * and temporary directories left from extractions that did not finish.
+     */
+    public synchronized void prune() {
+        final long now = System.currentTimeMillis();
+
+        File[] dirs = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                if (!pathname.isDirectory()) {
+                    return false;
+                }
+                long maxAge = pathname.getName().endsWith(".tmp") ? MAX_TEMP_AGE : MAX_UNUSED_AGE;
+                return (now - pathname.lastModified()) > maxAge;
+            }
+        });
+
+        if (dirs != null) {
+            for (File dir : dirs) {
+                log.info("Removing unused natives at " + dir.getAbsolutePath() + "...");
+                try {
+                    FileUtils.deleteDirectory(dir);
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Failed to delete " + dir.getAbsolutePath(), e);
+                }
+            }
+        }
+    }
+
+}
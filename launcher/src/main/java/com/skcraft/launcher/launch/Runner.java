@@ -9,18 +9,15 @@ package com.skcraft.launcher.launch;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.io.Files;
 import com.skcraft.concurrency.DefaultProgress;
 import com.skcraft.concurrency.ProgressObservable;
 import com.skcraft.launcher.*;
 import com.skcraft.launcher.auth.Session;
-import com.skcraft.launcher.install.ZipExtract;
 import com.skcraft.launcher.launch.runtime.JavaRuntime;
 import com.skcraft.launcher.launch.runtime.JavaRuntimeFinder;
 import com.skcraft.launcher.model.minecraft.*;
-import com.skcraft.launcher.persistence.Persistence;
 import com.skcraft.launcher.util.Environment;
+import com.skcraft.launcher.util.Metrics;
 import com.skcraft.launcher.util.Platform;
 import com.skcraft.launcher.util.SharedLocale;
 import lombok.Getter;
@@ -30,7 +27,6 @@ import lombok.extern.java.Log;
 import org.apache.commons.lang.text.StrSubstitutor;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
@@ -41,7 +37,6 @@ import java.util.concurrent.CancellationException;
 import java.util.function.BiPredicate;
 
 import static com.skcraft.launcher.LauncherUtils.checkInterrupted;
-import static com.skcraft.launcher.util.SharedLocale.tr;
 
 /**
  * Handles the launching of an instance.
@@ -55,19 +50,17 @@ public class Runner implements Callable<Process>, ProgressObservable {
     private final Launcher launcher;
     private final Instance instance;
     private final Session session;
-    private final File extractDir;
+    private File extractDir;
     private final BiPredicate<JavaRuntime, JavaVersion> javaRuntimeMismatch;
     @Getter
     @Setter
     private Environment environment = Environment.getInstance();
 
-    private VersionManifest versionManifest;
-    private AssetsIndex assetsIndex;
+    private LaunchPlan plan;
     private File virtualAssetsDir;
     private Configuration config;
     private JavaProcessBuilder builder;
-    private AssetsRoot assetsRoot;
-    private final FeatureList.Mutable featureList;
+    private FeatureList featureList;
 
     /**
      * Create a new instance launcher.
@@ -75,31 +68,25 @@ public class Runner implements Callable<Process>, ProgressObservable {
      * @param launcher            the launcher
      * @param instance            the instance
      * @param session             the session
-     * @param extractDir          the directory to extract to
      * @param javaRuntimeMismatch
      */
     public Runner(@NonNull Launcher launcher, @NonNull Instance instance,
-                  @NonNull Session session, @NonNull File extractDir,
+                  @NonNull Session session,
                   BiPredicate<JavaRuntime, JavaVersion> javaRuntimeMismatch) {
         this.launcher = launcher;
         this.instance = instance;
         this.session = session;
-        this.extractDir = extractDir;
         this.javaRuntimeMismatch = javaRuntimeMismatch;
-        this.featureList = new FeatureList.Mutable();
     }
 
     /**
-     * Get the path to the JAR.
+     * Get the path of the timings of the last launch of an instance.
      *
-     * @return the JAR path
+     * @param instance the instance
+     * @return the path
      */
-    private File getJarPath() {
-        File jarPath = instance.getCustomJarPath();
-        if (!jarPath.exists()) {
-            jarPath = launcher.getJarPath(versionManifest);
-        }
-        return jarPath;
+    public static File getMetricsPath(Instance instance) {
+        return new File(instance.getDir(), "launch_metrics.json");
     }
 
     @Override
@@ -108,57 +95,54 @@ public class Runner implements Callable<Process>, ProgressObservable {
             throw new LauncherException("Update required", SharedLocale.tr("runner.updateRequired"));
         }
 
-        config = launcher.getConfig();
-        builder = new JavaProcessBuilder();
-        assetsRoot = launcher.getAssets();
-
-        // Load manifiests
-        versionManifest = mapper.readValue(instance.getVersionPath(), VersionManifest.class);
-
-        // Load assets index
-        File assetsFile = assetsRoot.getIndexPath(versionManifest);
+        Metrics metrics = new Metrics("launch");
         try {
-            assetsIndex = mapper.readValue(assetsFile, AssetsIndex.class);
-        } catch (FileNotFoundException e) {
-            instance.setInstalled(false);
-            Persistence.commitAndForget(instance);
-            throw new LauncherException("Missing assets index " + assetsFile.getAbsolutePath(),
-                    tr("runner.missingAssetsIndex", instance.getTitle(), assetsFile.getAbsolutePath()));
-        } catch (IOException e) {
-            instance.setInstalled(false);
-            Persistence.commitAndForget(instance);
-            throw new LauncherException("Corrupt assets index " + assetsFile.getAbsolutePath(),
-                    tr("runner.corruptAssetsIndex", instance.getTitle(), assetsFile.getAbsolutePath()));
+            return call(metrics);
+        } finally {
+            metrics.write(getMetricsPath(instance));
         }
+    }
 
-        // Copy over assets to the tree
-        try {
-            AssetsRoot.AssetsTreeBuilder assetsBuilder = assetsRoot.createAssetsBuilder(versionManifest);
-            progress = assetsBuilder;
-            virtualAssetsDir = assetsBuilder.build();
-        } catch (LauncherException e) {
-            instance.setInstalled(false);
-            Persistence.commitAndForget(instance);
-            throw e;
+    private Process call(Metrics metrics) throws Exception {
+        config = launcher.getConfig();
+        builder = new JavaProcessBuilder();
+
+        // Load or create the launch plan
+        LaunchPlanner planner = new LaunchPlanner(launcher, instance, environment);
+        planner.setMetrics(metrics);
+        progress = planner;
+        featureList = planner.getFeatureList();
+        try (Metrics.Span span = metrics.start("loadLaunchPlan")) {
+            plan = planner.getPlan();
         }
+        extractDir = new File(plan.getNativesDir());
+        virtualAssetsDir = new File(plan.getVirtualAssetsDir());
 
         progress = new DefaultProgress(0.9, SharedLocale.tr("runner.collectingArgs"));
-        builder.classPath(getJarPath());
-        builder.setMainClass(versionManifest.getMainClass());
+        for (String path : plan.getClassPath()) {
+            builder.classPath(new File(path));
+        }
+        builder.setMainClass(plan.getMainClass());
 
-        addWindowArgs();
-        addLibraries();
-        addJvmArgs();
-        addJarArgs();
-        addProxyArgs();
-        addServerArgs();
-        addPlatformArgs();
-        addLegacyArgs();
+        try (Metrics.Span span = metrics.start("collectArguments")) {
+            addJvmArgs();
+            addJarArgs();
+            addProxyArgs();
+            addServerArgs();
+            addPlatformArgs();
+            addLegacyArgs();
 
-        callLaunchModifier();
+            callLaunchModifier();
+        }
 
         verifyJavaRuntime();
 
+        if (config.isClassDataSharing()) {
+            try (Metrics.Span span = metrics.start("classDataSharing")) {
+                new ClassDataSharing(new File(instance.getDir(), "cds")).apply(builder);
+            }
+        }
+
         ProcessBuilder processBuilder = new ProcessBuilder(builder.buildCommand());
         processBuilder.directory(instance.getContentDir());
         Runner.log.info("Launching: " + builder);
@@ -166,7 +150,9 @@ public class Runner implements Callable<Process>, ProgressObservable {
 
         progress = new DefaultProgress(1, SharedLocale.tr("runner.startingJava"));
 
-        return processBuilder.start();
+        try (Metrics.Span span = metrics.start("startProcess")) {
+            return processBuilder.start();
+        }
     }
 
     /**
@@ -178,7 +164,7 @@ public class Runner implements Callable<Process>, ProgressObservable {
 
     private void verifyJavaRuntime() {
         JavaRuntime pickedRuntime = builder.getRuntime();
-        JavaVersion targetVersion = versionManifest.getJavaVersion();
+        JavaVersion targetVersion = plan.getJavaVersion();
 
         if (pickedRuntime == null || targetVersion == null) {
             return;
@@ -198,42 +184,9 @@ public class Runner implements Callable<Process>, ProgressObservable {
      */
     private void addPlatformArgs() {
         // Mac OS X arguments
-        if (getEnvironment().getPlatform() == Platform.MAC_OS_X) {
-            File icnsPath = assetsIndex.getObjectPath(assetsRoot, "icons/minecraft.icns");
-            if (icnsPath != null) {
-                builder.getFlags().add("-Xdock:icon=" + icnsPath.getAbsolutePath());
-                builder.getFlags().add("-Xdock:name=Minecraft");
-            }
-        }
-    }
-
-    /**
-     * Add libraries.
-     */
-    private void addLibraries() throws LauncherException {
-        // Add libraries to classpath or extract the libraries as necessary
-        for (Library library : versionManifest.getLibraries()) {
-            if (!library.matches(environment)) {
-                continue;
-            }
-
-            File path = new File(launcher.getLibrariesDir(), library.getPath(environment));
-
-            if (path.exists()) {
-                Library.Extract extract = library.getExtract();
-                if (extract != null) {
-                    ZipExtract zipExtract = new ZipExtract(Files.asByteSource(path), extractDir);
-                    zipExtract.setExclude(extract.getExclude());
-                    zipExtract.run();
-                } else {
-                    builder.classPath(path);
-                }
-            } else {
-                instance.setInstalled(false);
-                Persistence.commitAndForget(instance);
-                throw new LauncherException("Missing library " + library.getName(),
-                        tr("runner.missingLibrary", instance.getTitle(), library.getName()));
-            }
+        if (getEnvironment().getPlatform() == Platform.MAC_OS_X && plan.getDockIcon() != null) {
+            builder.getFlags().add("-Xdock:icon=" + plan.getDockIcon());
+            builder.getFlags().add("-Xdock:name=Minecraft");
         }
     }
 
@@ -243,44 +196,8 @@ public class Runner implements Callable<Process>, ProgressObservable {
      * @throws IOException on I/O error
      */
     private void addJvmArgs() throws IOException, LauncherException {
-        Optional<MemorySettings> memorySettings = Optional.ofNullable(instance.getSettings().getMemorySettings());
-
-        int minMemory = memorySettings
-                .map(MemorySettings::getMinMemory)
-                .orElse(config.getMinMemory());
-
-        int maxMemory = memorySettings
-                .map(MemorySettings::getMaxMemory)
-                .orElse(config.getMaxMemory());
-
-        int permGen = config.getPermGen();
-
-        if (minMemory <= 0) {
-            minMemory = 1024;
-        }
-
-        if (maxMemory <= 0) {
-            maxMemory = 1024;
-        }
-
-        if (permGen <= 0) {
-            permGen = 128;
-        }
-
-        if (permGen <= 64) {
-            permGen = 64;
-        }
-
-        if (minMemory > maxMemory) {
-            maxMemory = minMemory;
-        }
-
-        builder.setMinMemory(minMemory);
-        builder.setMaxMemory(maxMemory);
-        builder.setPermGen(permGen);
-
         JavaRuntime selectedRuntime = Optional.ofNullable(instance.getSettings().getRuntime())
-                .orElseGet(() -> Optional.ofNullable(versionManifest.getJavaVersion())
+                .orElseGet(() -> Optional.ofNullable(plan.getJavaVersion())
                         .flatMap(JavaRuntimeFinder::findBestJavaRuntime)
                         .orElse(config.getJavaRuntime())
                 );
@@ -300,24 +217,32 @@ public class Runner implements Callable<Process>, ProgressObservable {
             }
         }
 
-        List<GameArgument> javaArguments = versionManifest.getArguments().getJvmArguments();
-        StrSubstitutor substitutor = new StrSubstitutor(getCommandSubstitutions());
-        for (GameArgument arg : javaArguments) {
-            if (arg.shouldApply(environment, featureList)) {
-                for (String subArg : arg.getValues()) {
-                    flags.add(substitutor.replace(subArg));
-                }
-            }
+        MemoryProfiler profiler = new MemoryProfiler(config, instance);
+        MemoryProfile memoryProfile = profiler.create(selectedRuntime, flags);
+        profiler.save(memoryProfile);
+        builder.setMinMemory(memoryProfile.getMinHeap());
+        builder.setMaxMemory(memoryProfile.getMaxHeap());
+        flags.addAll(memoryProfile.getFlags());
+
+        int permGen = config.getPermGen();
+
+        if (permGen <= 0) {
+            permGen = 128;
         }
 
-        if (versionManifest.getLogging() != null) {
-            log.info("Logging config present, log4j2 bug likely mitigated");
+        if (permGen <= 64) {
+            permGen = 64;
+        }
 
-            VersionManifest.LoggingConfig config = versionManifest.getLogging().getClient();
-            File configFile = new File(launcher.getLibrariesDir(), config.getFile().getId());
-            StrSubstitutor loggingSub = new StrSubstitutor(ImmutableMap.of("path", configFile.getAbsolutePath()));
+        builder.setPermGen(permGen);
+
+        StrSubstitutor substitutor = new StrSubstitutor(getCommandSubstitutions());
+        for (String arg : plan.getJvmArguments()) {
+            flags.add(substitutor.replace(arg));
+        }
 
-            flags.add(loggingSub.replace(config.getArgument()));
+        if (plan.getLoggingArgument() != null) {
+            flags.add(plan.getLoggingArgument());
         }
     }
 
@@ -329,14 +254,9 @@ public class Runner implements Callable<Process>, ProgressObservable {
     private void addJarArgs() throws JsonProcessingException {
         List<String> args = builder.getArgs();
 
-        List<GameArgument> rawArgs = versionManifest.getArguments().getGameArguments();
         StrSubstitutor substitutor = new StrSubstitutor(getCommandSubstitutions());
-        for (GameArgument arg : rawArgs) {
-            if (arg.shouldApply(environment, featureList)) {
-                for (String subArg : arg.getValues()) {
-                    args.add(substitutor.replace(subArg));
-                }
-            }
+        for (String arg : plan.getGameArguments()) {
+            args.add(substitutor.replace(arg));
         }
     }
 
@@ -387,24 +307,13 @@ public class Runner implements Callable<Process>, ProgressObservable {
         }
     }
 
-    /**
-     * Add window arguments.
-     */
-    private void addWindowArgs() {
-        int width = config.getWindowWidth();
-
-        if (width >= 10) {
-            featureList.addFeature("has_custom_resolution", true);
-        }
-    }
-
     /**
      * Add arguments to make legacy Minecraft work.
      */
     private void addLegacyArgs() {
         List<String> flags = builder.getFlags();
 
-        if (versionManifest.getMinimumLauncherVersion() < 21) {
+        if (plan.getMinimumLauncherVersion() < 21) {
             // Add bits that the legacy manifests don't
             flags.add("-Djava.library.path=" + extractDir.getAbsoluteFile());
             flags.add("-cp");
@@ -424,7 +333,7 @@ public class Runner implements Callable<Process>, ProgressObservable {
             }
         }
 
-        if (versionManifest.getMinimumLauncherVersion() < 18) {
+        if (plan.getMinimumLauncherVersion() < 18) {
             // TODO find out exactly what versions need this hack.
             flags.add("-Dminecraft.applet.TargetDirectory=" + instance.getContentDir());
         }
@@ -439,7 +348,7 @@ public class Runner implements Callable<Process>, ProgressObservable {
     private Map<String, String> getCommandSubstitutions() throws JsonProcessingException {
         Map<String, String> map = new HashMap<String, String>();
 
-        map.put("version_name", versionManifest.getId());
+        map.put("version_name", plan.getVersionId());
         map.put("version_type", launcher.getProperties().getProperty("launcherShortname"));
 
         map.put("auth_access_token", session.getAccessToken());
@@ -454,7 +363,7 @@ public class Runner implements Callable<Process>, ProgressObservable {
         map.put("game_directory", instance.getContentDir().getAbsolutePath());
         map.put("game_assets", virtualAssetsDir.getAbsolutePath());
         map.put("assets_root", launcher.getAssets().getDir().getAbsolutePath());
-        map.put("assets_index_name", versionManifest.getAssetId());
+        map.put("assets_index_name", plan.getAssetId());
 
         map.put("resolution_width", String.valueOf(config.getWindowWidth()));
         map.put("resolution_height", String.valueOf(config.getWindowHeight()));
@@ -0,0 +1,104 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.launch.runtime;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * The Java runtimes found by the last scan, saved along with the
+ * modification time of every directory that was scanned and the stamp of
+ * the platform's extra runtimes, so that the scan only has to be repeated
+ * after one of those changes.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+class JavaRuntimeCache {
+
+    static final int CURRENT_VERSION = 2;
+
+    private int version;
+    private Map<String, Long> roots = new HashMap<>();
+    private String extraStamp = "";
+    private List<Entry> runtimes = new ArrayList<>();
+
+    /**
+     * Get the modification time of each of the given directories.
+     *
+     * @param dirs the directories
+     * @return a map of absolute path to modification time, which is 0 for missing directories
+     */
+    static Map<String, Long> stamp(Collection<File> dirs) {
+        Map<String, Long> stamps = new HashMap<>();
+        for (File dir : dirs) {
+            stamps.put(dir.getAbsolutePath(), dir.lastModified());
+        }
+        return stamps;
+    }
+
+    /**
+     * Get the cached runtimes, leaving out any that have since been deleted.
+     *
+     * @return the runtimes, sorted by preference
+     */
+    List<JavaRuntime> toRuntimes() {
+        List<JavaRuntime> list = new ArrayList<>();
+        for (Entry entry : runtimes) {
+            File dir = new File(entry.getDir());
+            if (dir.isDirectory()) {
+                JavaRuntime runtime = new JavaRuntime(dir, entry.getVersion(), entry.isArch64Bit());
+                runtime.setMinecraftBundled(entry.isMinecraftBundled());
+                list.add(runtime);
+            }
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * Check whether any cached runtime has been deleted.
+     *
+     * @return true if a runtime is missing
+     */
+    boolean hasMissingRuntimes() {
+        for (Entry entry : runtimes) {
+            if (!new File(entry.getDir()).isDirectory()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static JavaRuntimeCache create(Map<String, Long> roots, String extraStamp, Collection<JavaRuntime> runtimes) {
+        JavaRuntimeCache cache = new JavaRuntimeCache();
+        cache.setVersion(CURRENT_VERSION);
+        cache.setRoots(roots);
+        cache.setExtraStamp(extraStamp);
+        for (JavaRuntime runtime : runtimes) {
+            Entry entry = new Entry();
+            entry.setDir(runtime.getDir().getAbsolutePath());
+            entry.setVersion(runtime.getVersion());
+            entry.setArch64Bit(runtime.is64Bit());
+            entry.setMinecraftBundled(runtime.isMinecraftBundled());
+            cache.getRuntimes().add(entry);
+        }
+        return cache;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Entry {
+        private String dir;
+        private String version;
+        private boolean arch64Bit;
+        private boolean minecraftBundled;
+    }
+
+}
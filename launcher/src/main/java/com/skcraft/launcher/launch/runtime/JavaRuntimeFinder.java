@@ -7,13 +7,17 @@
 package com.skcraft.launcher.launch.runtime;
 
 import com.skcraft.launcher.model.minecraft.JavaVersion;
+import com.skcraft.launcher.persistence.Persistence;
 import com.skcraft.launcher.util.Environment;
 import lombok.extern.java.Log;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 /**
@@ -22,11 +26,36 @@ import java.util.stream.Collectors;
 @Log
 public final class JavaRuntimeFinder {
 
+    private static final Object lock = new Object();
+    private static final Object scanLock = new Object();
+    private static final AtomicBoolean refreshing = new AtomicBoolean();
+    private static File cacheFile;
+    private static JavaRuntimeCache cache;
+    private static boolean cacheLoaded;
+
     private JavaRuntimeFinder() {
     }
 
+    /**
+     * Set the file that found runtimes are saved to between launcher runs.
+     *
+     * @param file the file, or null to only keep them in memory
+     */
+    public static void setCacheFile(File file) {
+        synchronized (lock) {
+            cacheFile = file;
+            cache = null;
+            cacheLoaded = false;
+        }
+    }
+
     /**
      * Get all available Java runtimes on the system
+     * <p>
+     * The result of the last scan is returned if there is one, and the
+     * scanned directories and the platform's extra runtimes are checked for
+     * changes in the background, with a new scan only being done if one of
+     * them has changed.
      *
      * @return List of available Java runtimes sorted by newest first
      */
@@ -38,6 +67,131 @@ public final class JavaRuntimeFinder {
             return Collections.emptyList();
         }
 
+        JavaRuntimeCache current = getCache();
+        if (current == null) {
+            return scan(env, runtimeFinder);
+        }
+
+        if (refreshing.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    refreshIfChanged(env, runtimeFinder);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+
+        return current.toRuntimes();
+    }
+
+    /**
+     * Find the best runtime for a given Java version
+     *
+     * @param targetVersion Version to match
+     * @return Java runtime if available, empty Optional otherwise
+     */
+    public static Optional<JavaRuntime> findBestJavaRuntime(JavaVersion targetVersion) {
+        Optional<JavaRuntime> runtime = findBestJavaRuntime(getAvailableRuntimes(), targetVersion);
+
+        if (!runtime.isPresent()) {
+            // A matching runtime may have been installed since the last scan, somewhere that isn't watched
+            runtime = findBestJavaRuntime(rescan(), targetVersion);
+        }
+
+        return runtime;
+    }
+
+    private static Optional<JavaRuntime> findBestJavaRuntime(List<JavaRuntime> entries, JavaVersion targetVersion) {
+        return entries.stream().sorted()
+                .filter(runtime -> runtime.getMajorVersion() == targetVersion.getMajorVersion())
+                .findFirst();
+    }
+
+    public static Optional<JavaRuntime> findAnyJavaRuntime() {
+        Optional<JavaRuntime> runtime = getAvailableRuntimes().stream().sorted().findFirst();
+
+        if (!runtime.isPresent()) {
+            runtime = rescan().stream().sorted().findFirst();
+        }
+
+        return runtime;
+    }
+
+    private static List<JavaRuntime> rescan() {
+        Environment env = Environment.getInstance();
+        PlatformRuntimeFinder runtimeFinder = getRuntimeFinder(env);
+
+        if (runtimeFinder == null) {
+            return Collections.emptyList();
+        }
+
+        log.info("No matching Java runtime was found; scanning for runtimes again...");
+        return scan(env, runtimeFinder);
+    }
+
+    private static List<JavaRuntime> refreshIfChanged(Environment env, PlatformRuntimeFinder runtimeFinder) {
+        JavaRuntimeCache current = getCache();
+
+        if (current != null && !current.hasMissingRuntimes() &&
+                current.getRoots().equals(JavaRuntimeCache.stamp(getRoots(env, runtimeFinder))) &&
+                current.getExtraStamp().equals(runtimeFinder.getExtraRuntimesStamp())) {
+            return current.toRuntimes();
+        }
+
+        log.info("Java runtime locations have changed; scanning for runtimes again...");
+        return scan(env, runtimeFinder);
+    }
+
+    private static JavaRuntimeCache getCache() {
+        synchronized (lock) {
+            if (!cacheLoaded) {
+                cacheLoaded = true;
+                if (cacheFile != null) {
+                    JavaRuntimeCache loaded = Persistence.read(cacheFile, JavaRuntimeCache.class, true);
+                    if (loaded != null && loaded.getVersion() == JavaRuntimeCache.CURRENT_VERSION) {
+                        cache = loaded;
+                    }
+                }
+            }
+            return cache;
+        }
+    }
+
+    private static Set<File> getRoots(Environment env, PlatformRuntimeFinder runtimeFinder) {
+        Set<File> roots = new HashSet<>(runtimeFinder.getRuntimeRoots());
+        roots.addAll(MinecraftJavaFinder.getScannedDirectories(runtimeFinder.getLauncherDirectories(env)));
+        return roots;
+    }
+
+    private static List<JavaRuntime> scan(Environment env, PlatformRuntimeFinder runtimeFinder) {
+        synchronized (scanLock) {
+            // Stamp before scanning so that a change made during the scan causes another one
+            Map<String, Long> roots = JavaRuntimeCache.stamp(getRoots(env, runtimeFinder));
+            String extraStamp = runtimeFinder.getExtraRuntimesStamp();
+            List<JavaRuntime> runtimes = findRuntimes(env, runtimeFinder);
+            JavaRuntimeCache updated = JavaRuntimeCache.create(roots, extraStamp, runtimes);
+            File file;
+
+            synchronized (lock) {
+                cache = updated;
+                cacheLoaded = true;
+                file = cacheFile;
+            }
+
+            if (file != null) {
+                try {
+                    Persistence.write(file, updated);
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Failed to save the found Java runtimes to " + file.getAbsolutePath(), e);
+                }
+            }
+
+            return runtimes;
+        }
+    }
+
+    private static List<JavaRuntime> findRuntimes(Environment env, PlatformRuntimeFinder runtimeFinder) {
         // Add Minecraft javas asynchronously
         CompletableFuture<List<JavaRuntime>> mcRuntimesFuture = CompletableFuture.supplyAsync(() ->
                 MinecraftJavaFinder.scanLauncherDirectories(env, runtimeFinder.getLauncherDirectories(env)));
@@ -62,29 +216,11 @@ public final class JavaRuntimeFinder {
             // Wait for both tasks to complete
             return combinedFuture.get().stream().sorted().collect(Collectors.toList());
         } catch (InterruptedException | ExecutionException e) {
-            log.log(java.util.logging.Level.WARNING, "Error while getting available runtimes", e);
+            log.log(Level.WARNING, "Error while getting available runtimes", e);
             return Collections.emptyList();
         }
     }
 
-    /**
-     * Find the best runtime for a given Java version
-     *
-     * @param targetVersion Version to match
-     * @return Java runtime if available, empty Optional otherwise
-     */
-    public static Optional<JavaRuntime> findBestJavaRuntime(JavaVersion targetVersion) {
-        List<JavaRuntime> entries = getAvailableRuntimes();
-
-        return entries.stream().sorted()
-                .filter(runtime -> runtime.getMajorVersion() == targetVersion.getMajorVersion())
-                .findFirst();
-    }
-
-    public static Optional<JavaRuntime> findAnyJavaRuntime() {
-        return getAvailableRuntimes().stream().sorted().findFirst();
-    }
-
     public static JavaRuntime getRuntimeFromPath(String path) {
         return getRuntimeFromPath(new File(path));
     }
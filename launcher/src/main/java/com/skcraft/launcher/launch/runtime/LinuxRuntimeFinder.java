@@ -37,6 +37,19 @@ public class LinuxRuntimeFinder implements PlatformRuntimeFinder {
         return entries;
     }
 
+    @Override
+    public Set<File> getRuntimeRoots() {
+        Set<File> roots = new HashSet<>();
+
+        String javaHome = System.getenv("JAVA_HOME");
+        if (javaHome != null) {
+            roots.add(new File(javaHome));
+        }
+
+        roots.add(new File("/usr/lib/jvm"));
+        return roots;
+    }
+
     @Override
     public List<JavaRuntime> getExtraRuntimes() {
         return Collections.emptyList();
@@ -28,6 +28,14 @@ public class MacRuntimeFinder implements PlatformRuntimeFinder {
         return Collections.emptyList();
     }
 
+    @Override
+    public Set<File> getRuntimeRoots() {
+        // Where java_home finds its runtimes
+        return ImmutableSet.of(
+                new File("/Library/Java/JavaVirtualMachines"),
+                new File(System.getenv("HOME"), "Library/Java/JavaVirtualMachines"));
+    }
+
     @Override
     public List<JavaRuntime> getExtraRuntimes() {
         ArrayList<JavaRuntime> entries = Lists.newArrayList();
@@ -51,6 +59,17 @@ public class MacRuntimeFinder implements PlatformRuntimeFinder {
         return entries;
     }
 
+    @Override
+    public String getExtraRuntimesStamp() {
+        // java_home also knows about runtimes outside of the runtime roots
+        List<String> dirs = new ArrayList<>();
+        for (JavaRuntime runtime : getExtraRuntimes()) {
+            dirs.add(runtime.getDir().getAbsolutePath() + ":" + runtime.getVersion());
+        }
+        Collections.sort(dirs);
+        return String.join(",", dirs);
+    }
+
     private static boolean isArch64Bit(String string) {
         return string == null || string.matches("x64|x86_64|amd64|aarch64");
     }
@@ -4,9 +4,7 @@ import com.skcraft.launcher.util.Environment;
 import com.skcraft.launcher.util.Platform;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -21,12 +19,10 @@ public class MinecraftJavaFinder {
         ArrayList<JavaRuntime> entries = new ArrayList<>();
 
         // 1. Search in .FoxFord\java with the highest priority
-        File foxFordJavaDir = new File(System.getenv("APPDATA"), ".FoxFord\\java");
-        addJavaLocations(entries, foxFordJavaDir, env);
+        addJavaLocations(entries, getFoxFordJavaDir(), env);
 
         // 2. Search in C:\Program Files\Eclipse Adoptium
-        File adoptiumDir = new File("C:\\Program Files\\Eclipse Adoptium");
-        addJavaLocations(entries, adoptiumDir, env);
+        addJavaLocations(entries, getAdoptiumDir(), env);
 
         // 3. Process other directories
         for (File install : launcherDirs) {
@@ -45,6 +41,30 @@ public class MinecraftJavaFinder {
         return entries;
     }
 
+    /**
+     * Get the directories that {@link #scanLauncherDirectories(Environment, Collection)} looks in.
+     *
+     * @param launcherDirs the launcher directories
+     * @return the directories
+     */
+    public static Set<File> getScannedDirectories(Collection<File> launcherDirs) {
+        Set<File> dirs = new HashSet<>();
+        dirs.add(getFoxFordJavaDir());
+        dirs.add(getAdoptiumDir());
+        for (File install : launcherDirs) {
+            dirs.add(new File(install, "runtime"));
+        }
+        return dirs;
+    }
+
+    private static File getFoxFordJavaDir() {
+        return new File(System.getenv("APPDATA"), ".FoxFord\\java");
+    }
+
+    private static File getAdoptiumDir() {
+        return new File("C:\\Program Files\\Eclipse Adoptium");
+    }
+
     private static void addJavaLocations(List<JavaRuntime> entries, File directory, Environment env) {
         if (directory.exists() && directory.isDirectory()) {
             File[] files = directory.listFiles((dir, name) -> name.toLowerCase().equals("bin") && new File(dir, "java.exe").exists());
@@ -29,4 +29,22 @@ public interface PlatformRuntimeFinder {
      * @return List of extra Java runtimes
      */
     List<JavaRuntime> getExtraRuntimes();
+
+    /**
+     * Get the directories that the candidate locations and extra runtimes are found in.
+     * A change to the modification time of any of these means that a new scan is needed.
+     *
+     * @return Set of directories to watch for changes
+     */
+    Set<File> getRuntimeRoots();
+
+    /**
+     * Get a cheap summary of where {@link #getExtraRuntimes()} finds its runtimes, such as the
+     * registry keys on Windows. A change to it means that a new scan is needed.
+     *
+     * @return A string that changes when the extra runtimes may have changed
+     */
+    default String getExtraRuntimesStamp() {
+        return "";
+    }
 }
@@ -14,7 +14,10 @@ import java.util.logging.Level;
 @Log
 public class WindowsRuntimeFinder implements PlatformRuntimeFinder {
 
-    private static final Map<String, List<JavaRuntime>> registryCache = new HashMap<>();
+    private static final String[] REGISTRY_PATHS = {
+            "SOFTWARE\\JavaSoft\\Java Runtime Environment",
+            "SOFTWARE\\JavaSoft\\Java Development Kit"
+    };
 
     @Override
     public Set<File> getLauncherDirectories(Environment env) {
@@ -48,6 +51,17 @@ public class WindowsRuntimeFinder implements PlatformRuntimeFinder {
         return candidateJavaLocations;
     }
 
+    @Override
+    public Set<File> getRuntimeRoots() {
+        // Installers that register runtimes in the registry also put them in one of these
+        Set<File> roots = new HashSet<>();
+        roots.add(new File(System.getenv("APPDATA"), ".foxford\\java"));
+        roots.add(new File(System.getenv("ProgramFiles"), "Java"));
+        roots.add(new File(System.getenv("ProgramFiles(x86)"), "Java"));
+        roots.add(new File("C:\\Program Files"));
+        return roots;
+    }
+
     private void addJavaLocations(Collection<File> locations, File directory) {
         if (directory.exists() && directory.isDirectory()) {
             File[] javaDirs = directory.listFiles((dir, name) -> name.toLowerCase().startsWith("jdk") && new File(dir, "bin/java.exe").exists());
@@ -65,8 +79,9 @@ public class WindowsRuntimeFinder implements PlatformRuntimeFinder {
         List<JavaRuntime> entries = new ArrayList<>();
 
         try {
-            entries.addAll(getEntriesFromRegistry("SOFTWARE\\JavaSoft\\Java Runtime Environment"));
-            entries.addAll(getEntriesFromRegistry("SOFTWARE\\JavaSoft\\Java Development Kit"));
+            for (String basePath : REGISTRY_PATHS) {
+                entries.addAll(getEntriesFromRegistry(basePath));
+            }
         } catch (Throwable err) {
             log.warning("Failed to read Java locations from registry: " + err.getMessage());
         }
@@ -74,11 +89,23 @@ public class WindowsRuntimeFinder implements PlatformRuntimeFinder {
         return entries;
     }
 
-    private List<JavaRuntime> getEntriesFromRegistry(String basePath) {
-        if (registryCache.containsKey(basePath)) {
-            return registryCache.get(basePath);
+    @Override
+    public String getExtraRuntimesStamp() {
+        // Only list the keys; reading every JavaHome is left to the scan
+        StringBuilder builder = new StringBuilder();
+        try {
+            for (String basePath : REGISTRY_PATHS) {
+                List<String> subKeys = new ArrayList<>(WinRegistry.readStringSubKeys(WinReg.HKEY_LOCAL_MACHINE, basePath));
+                Collections.sort(subKeys);
+                builder.append(basePath).append('=').append(String.join(",", subKeys)).append(';');
+            }
+        } catch (Throwable err) {
+            log.warning("Failed to read Java locations from registry: " + err.getMessage());
         }
+        return builder.toString();
+    }
 
+    private List<JavaRuntime> getEntriesFromRegistry(String basePath) {
         List<JavaRuntime> entries = new ArrayList<>();
 
         try {
@@ -95,8 +122,6 @@ public class WindowsRuntimeFinder implements PlatformRuntimeFinder {
                     entries.add(entry);
                 }
             }
-
-            registryCache.put(basePath, entries);
         } catch (InterruptedException | ExecutionException err) {
             log.log(Level.WARNING, "Failed to read Java locations from registry: " + err.getMessage());
         }
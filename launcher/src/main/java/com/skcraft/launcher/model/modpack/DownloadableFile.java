@@ -8,6 +8,7 @@ import lombok.NonNull;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 
 import static com.skcraft.launcher.LauncherUtils.concat;
 
@@ -22,7 +23,7 @@ public class DownloadableFile {
     public LocalFile download(@NonNull Installer installer, Manifest manifest) throws MalformedURLException {
         URL url = concat(manifest.getObjectsUrl(), getLocation());
 
-        File local = installer.getDownloader().download(url, hash, size, name);
+        File local = installer.getDownloader().download(Collections.singletonList(url), hash, hash, size, name);
         return new LocalFile(local, name);
     }
 
@@ -19,6 +19,7 @@ import org.apache.commons.io.FilenameUtils;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.skcraft.launcher.LauncherUtils.concat;
@@ -57,20 +58,37 @@ public class FileInstall extends ManifestEntry {
         String fileVersion = getImpliedVersion();
         URL url = concat(getManifest().getObjectsUrl(), getLocation());
 
-        if (shouldUpdate(cache, targetFile)) {
+        if (shouldUpdate(cache, extras.getFileIndex(), targetFile)) {
             long size = this.size;
             if (size <= 0) {
                 size = 10 * 1024;
             }
 
-            File tempFile = installer.getDownloader().download(url, fileVersion, size, to);
-            installer.queue(new InstallLogFileMover(log, tempFile, targetFile));
+            File tempFile = installer.getDownloader().download(
+                    Collections.singletonList(url), fileVersion, hash, size, to, getSharing());
+            installer.queue(new InstallLogFileMover(log, tempFile, targetFile,
+                    extras.getFileIndex(), getIndexKey(), hash));
         } else {
             log.add(to, to);
         }
     }
 
-    private boolean shouldUpdate(UpdateCache cache, File targetFile) throws IOException {
+    private ObjectStore.Sharing getSharing() {
+        // Archives are only ever replaced, so instances can share them, but
+        // configs and user files are edited in place and need their own copy
+        String extension = FilenameUtils.getExtension(getTargetPath()).toLowerCase();
+        if (!isUserFile() && (extension.equals("jar") || extension.equals("zip"))) {
+            return ObjectStore.Sharing.LINK;
+        }
+        return ObjectStore.Sharing.COPY;
+    }
+
+    @JsonIgnore
+    public String getIndexKey() {
+        return FilenameUtils.normalize(getTargetPath());
+    }
+
+    private boolean shouldUpdate(UpdateCache cache, FileIndex fileIndex, File targetFile) throws IOException {
         if (targetFile.exists() && isUserFile()) {
             return false;
         }
@@ -80,13 +98,15 @@ public class FileInstall extends ManifestEntry {
         }
 
         if (hash != null) {
-            String existingHash = Files.hash(targetFile, hf).toString();
-            if (existingHash.equalsIgnoreCase(hash)) {
+            String existingHash = fileIndex != null
+                    ? fileIndex.getHash(getIndexKey(), targetFile)
+                    : Files.hash(targetFile, hf).toString();
+            if (hash.equalsIgnoreCase(existingHash)) {
                 return false;
             }
         }
 
-        return cache.mark(FilenameUtils.normalize(getTargetPath()), getImpliedVersion());
+        return cache.mark(getIndexKey(), getImpliedVersion());
     }
 
 }
@@ -0,0 +1,162 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.model.modpack;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * The changes to the file entries of a package manifest between two
+ * versions, so that an installed pack can be updated without downloading
+ * the whole manifest again.
+ * <p>
+ * File entries are keyed by their target path. The delta has the rest of
+ * the new manifest as it is, with only the tasks that are not files left
+ * in it, followed by the file entries that were added or changed and the
+ * target paths of the file entries that were removed.
+ * <p>
+ * Manifests are handled as JSON trees rather than as {@link Manifest}
+ * objects, because the features that file entries refer to by name have
+ * to be resolved against the features of the new manifest.
+ */
+@Data
+public class ManifestDelta {
+
+    private static final String MANIFEST_SUFFIX = ".json";
+    private static final String DELTA_SUFFIX = ".delta.json";
+
+    private String baseVersion;
+    private String version;
+    private ObjectNode manifest;
+    private List<JsonNode> files = new ArrayList<JsonNode>();
+    private List<String> removed = new ArrayList<String>();
+
+    /**
+     * Get the file name of the delta that is published alongside the
+     * manifest with the given file name.
+     *
+     * @param manifestName the file name of the manifest, such as "pack.json"
+     * @return the file name of the delta, such as "pack.delta.json"
+     */
+    public static String getDeltaName(@NonNull String manifestName) {
+        if (manifestName.toLowerCase().endsWith(MANIFEST_SUFFIX)) {
+            manifestName = manifestName.substring(0, manifestName.length() - MANIFEST_SUFFIX.length());
+        }
+        return manifestName + DELTA_SUFFIX;
+    }
+
+    /**
+     * Get the URL of the delta that is published alongside the manifest
+     * at the given URL.
+     *
+     * @param manifestUrl the URL of the manifest
+     * @return the URL of the delta
+     * @throws MalformedURLException thrown if the URL can't be made
+     */
+    public static URL getDeltaUrl(@NonNull URL manifestUrl) throws MalformedURLException {
+        String path = manifestUrl.getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return new URL(manifestUrl, getDeltaName(name));
+    }
+
+    /**
+     * Create the delta between two manifests.
+     *
+     * @param base   the manifest of the previous version
+     * @param target the manifest of the new version
+     * @return the delta
+     */
+    public static ManifestDelta create(@NonNull ObjectNode base, @NonNull ObjectNode target) {
+        ManifestDelta delta = new ManifestDelta();
+        delta.setBaseVersion(base.path("version").asText(null));
+        delta.setVersion(target.path("version").asText(null));
+
+        Map<String, JsonNode> baseFiles = getFiles(base);
+        ObjectNode manifest = target.deepCopy();
+        ArrayNode otherTasks = manifest.putArray("tasks");
+
+        for (JsonNode task : target.path("tasks")) {
+            if (isFile(task)) {
+                JsonNode previous = baseFiles.remove(getTargetPath(task));
+                if (!task.equals(previous)) {
+                    delta.getFiles().add(task);
+                }
+            } else {
+                otherTasks.add(task);
+            }
+        }
+
+        delta.setManifest(manifest);
+        delta.getRemoved().addAll(baseFiles.keySet());
+        return delta;
+    }
+
+    /**
+     * Apply this delta to the manifest of the previous version.
+     *
+     * @param base the manifest of the previous version
+     * @return the manifest of the new version
+     * @throws IllegalArgumentException thrown if the manifest is not of the version that this delta is from
+     */
+    public ObjectNode apply(@NonNull ObjectNode base) {
+        if (manifest == null) {
+            throw new IllegalArgumentException("The delta has no manifest");
+        }
+
+        String version = base.path("version").asText(null);
+        if (baseVersion == null || !baseVersion.equals(version)) {
+            throw new IllegalArgumentException("The delta is from version " + baseVersion + ", not " + version);
+        }
+
+        // Sorted by target path, like the builder writes them
+        Map<String, JsonNode> files = new TreeMap<String, JsonNode>(getFiles(base));
+        for (String path : removed) {
+            files.remove(path);
+        }
+        for (JsonNode task : this.files) {
+            files.put(getTargetPath(task), task);
+        }
+
+        ObjectNode result = manifest.deepCopy();
+        ArrayNode tasks = result.putArray("tasks");
+        tasks.addAll(files.values());
+        for (JsonNode task : manifest.path("tasks")) {
+            tasks.add(task);
+        }
+        return result;
+    }
+
+    private static Map<String, JsonNode> getFiles(ObjectNode manifest) {
+        Map<String, JsonNode> files = new LinkedHashMap<String, JsonNode>();
+        for (JsonNode task : manifest.path("tasks")) {
+            if (isFile(task)) {
+                files.put(getTargetPath(task), task);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isFile(JsonNode task) {
+        // Entries without a type are files, as in ManifestEntry
+        String type = task.path("type").asText("file");
+        return type.equals("file");
+    }
+
+    private static String getTargetPath(JsonNode task) {
+        // The same as FileInstall.getTargetPath()
+        JsonNode to = task.get("to");
+        return to != null && !to.isNull() ? to.asText() : task.path("location").asText();
+    }
+
+}
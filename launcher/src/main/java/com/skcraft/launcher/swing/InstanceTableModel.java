@@ -13,6 +13,8 @@ import com.skcraft.launcher.util.SharedLocale;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
 
 public class InstanceTableModel extends AbstractTableModel {
 
@@ -20,6 +22,7 @@ public class InstanceTableModel extends AbstractTableModel {
     private final Icon instanceIcon;
     private final Icon customInstanceIcon;
     private final Icon downloadIcon;
+    private List<String> rows = new ArrayList<String>();
 
     public InstanceTableModel(InstanceList instances) {
         this.instances = instances;
@@ -28,9 +31,37 @@ public class InstanceTableModel extends AbstractTableModel {
         downloadIcon = SwingHelper.createIcon(Launcher.class, "download_icon.png", 14, 14);
     }
 
+    /**
+     * Update the table from the list of instances. If the same instances are
+     * listed in the same order, the rows are only redrawn, so that the
+     * selection stays where it is.
+     */
     public void update() {
         instances.sort();
-        fireTableDataChanged();
+
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < instances.size(); i++) {
+            names.add(instances.get(i).getName());
+        }
+
+        if (names.equals(rows)) {
+            if (!names.isEmpty()) {
+                fireTableRowsUpdated(0, names.size() - 1);
+            }
+        } else {
+            rows = names;
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Get the name of the instance that was shown in a row as of the last update.
+     *
+     * @param rowIndex the row
+     * @return the name, or null if there was no such row
+     */
+    public String getNameAt(int rowIndex) {
+        return rowIndex >= 0 && rowIndex < rows.size() ? rows.get(rowIndex) : null;
     }
 
     @Override
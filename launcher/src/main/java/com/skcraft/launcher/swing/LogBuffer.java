@@ -0,0 +1,215 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.swing;
+
+import lombok.Data;
+
+import javax.swing.text.AttributeSet;
+import java.util.List;
+
+/**
+ * A fixed size, thread-safe buffer of log lines, where adding a line past
+ * the capacity drops the oldest one.
+ * <p>
+ * Every line gets an index that keeps counting up as lines are added, so
+ * that a view can tell which lines it has already seen even after older
+ * ones have been dropped.
+ */
+public class LogBuffer {
+
+    /**
+     * Longer lines are split so that one line can't hold on to unbounded memory.
+     */
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    /**
+     * Tabs are expanded to spaces up to the next multiple of this many
+     * columns, as the view draws lines as plain strings.
+     */
+    private static final int TAB_SIZE = 8;
+
+    private final Line[] lines;
+    private long start;
+    private long end;
+    private StringBuilder partial;
+    private AttributeSet partialAttributes;
+    private long version;
+
+    /**
+     * Create a new buffer.
+     *
+     * @param capacity the maximum number of lines to keep
+     */
+    public LogBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+
+        this.lines = new Line[capacity];
+    }
+
+    /**
+     * Add text to the end of the log. Text without a trailing new line is
+     * kept as a partial line that later text is added to.
+     *
+     * @param text the text
+     * @param attributes the attributes of the text, or null for none
+     */
+    public synchronized void append(CharSequence text, AttributeSet attributes) {
+        int length = text.length();
+        int lineStart = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                appendPartial(text, lineStart, i, attributes);
+                // Treat \r\n as one line break
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                completeLine();
+                lineStart = i + 1;
+            }
+        }
+
+        appendPartial(text, lineStart, length, attributes);
+        version++;
+    }
+
+    private void appendPartial(CharSequence text, int from, int to, AttributeSet attributes) {
+        while (from < to) {
+            if (partial == null) {
+                partial = new StringBuilder();
+                partialAttributes = attributes;
+            }
+
+            if (text.charAt(from) == '\t') {
+                int spaces = TAB_SIZE - partial.length() % TAB_SIZE;
+                for (int i = 0; i < spaces && partial.length() < MAX_LINE_LENGTH; i++) {
+                    partial.append(' ');
+                }
+                from++;
+            } else {
+                int count = Math.min(to - from, MAX_LINE_LENGTH - partial.length());
+                for (int i = 0; i < count; i++) {
+                    if (text.charAt(from + i) == '\t') {
+                        count = i;
+                        break;
+                    }
+                }
+                partial.append(text, from, from + count);
+                from += count;
+            }
+
+            if (partial.length() >= MAX_LINE_LENGTH) {
+                completeLine();
+            }
+        }
+    }
+
+    private void completeLine() {
+        String text = partial != null ? partial.toString() : "";
+        AttributeSet attributes = partial != null ? partialAttributes : null;
+        partial = null;
+        partialAttributes = null;
+
+        lines[(int) (end % lines.length)] = new Line(text, attributes);
+        end++;
+        if (end - start > lines.length) {
+            start = end - lines.length;
+        }
+    }
+
+    /**
+     * Get the index of the oldest line still kept.
+     *
+     * @return the index
+     */
+    public synchronized long getStartIndex() {
+        return start;
+    }
+
+    /**
+     * Get the index after the newest line, including a partial line.
+     *
+     * @return the index
+     */
+    public synchronized long getEndIndex() {
+        return partial != null ? end + 1 : end;
+    }
+
+    /**
+     * Get a number that changes whenever the buffer does.
+     *
+     * @return the version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Copy the lines in the given range that are still kept to a list.
+     *
+     * @param from the index of the first line
+     * @param to the index after the last line
+     * @param out the list to add to
+     * @return the index of the first line copied
+     */
+    public synchronized long getLines(long from, long to, List<Line> out) {
+        from = Math.max(from, start);
+        to = Math.min(to, getEndIndex());
+
+        for (long i = from; i < to; i++) {
+            if (i == end) {
+                out.add(new Line(partial.toString(), partialAttributes));
+            } else {
+                out.add(lines[(int) (i % lines.length)]);
+            }
+        }
+
+        return from;
+    }
+
+    /**
+     * Get all the lines as text.
+     *
+     * @return the text
+     */
+    public synchronized String getText() {
+        StringBuilder builder = new StringBuilder();
+        for (long i = start; i < end; i++) {
+            builder.append(lines[(int) (i % lines.length)].getText()).append("\n");
+        }
+        if (partial != null) {
+            builder.append(partial);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Remove all lines. Indices keep counting from where they were.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = null;
+        }
+        start = end;
+        partial = null;
+        partialAttributes = null;
+        version++;
+    }
+
+    /**
+     * A single line of the log.
+     */
+    @Data
+    public static final class Line {
+        private final String text;
+        private final AttributeSet attributes;
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.swing;
+
+import com.skcraft.launcher.util.SharedLocale;
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.swing.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.StyleConstants;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows the lines of a {@link LogBuffer}, painting only the lines that are
+ * visible so that the cost of the view doesn't depend on how much is logged.
+ * <p>
+ * The view checks the buffer for changes at a fixed rate rather than for
+ * every added line, so however fast lines come in, the event dispatch
+ * thread does at most one update per frame. Whole lines can be selected
+ * with the mouse and copied.
+ */
+public class LogView extends JComponent implements Scrollable {
+
+    private static final int FRAME_INTERVAL = 33;
+
+    @Getter
+    private final LogBuffer buffer;
+    private final boolean colorEnabled;
+    private final Timer timer;
+    private final List<LogBuffer.Line> paintLines = new ArrayList<LogBuffer.Line>();
+    private long seenVersion = -1;
+    private long viewStart;
+    private long viewEnd;
+    private long measuredEnd;
+    private int maxLineWidth;
+    private long selectionAnchor = -1;
+    private long selectionLead = -1;
+
+    /**
+     * Create a new view.
+     *
+     * @param buffer the buffer to show
+     * @param colorEnabled true to use the colors of the lines
+     */
+    public LogView(@NonNull LogBuffer buffer, boolean colorEnabled) {
+        this.buffer = buffer;
+        this.colorEnabled = colorEnabled;
+
+        setOpaque(true);
+        setFocusable(true);
+        setFont(new JLabel().getFont());
+        setBackground(UIManager.getColor("TextArea.background"));
+        setForeground(UIManager.getColor("TextArea.foreground"));
+
+        timer = new Timer(FRAME_INTERVAL, e -> update());
+        timer.setCoalesce(true);
+
+        MouseAdapter selectionListener = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                if (SwingUtilities.isLeftMouseButton(e)) {
+                    selectionAnchor = selectionLead = getLineAt(e.getY());
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e) && selectionAnchor >= 0) {
+                    selectionLead = getLineAt(e.getY());
+                    scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                    repaint();
+                }
+            }
+        };
+        addMouseListener(selectionListener);
+        addMouseMotionListener(selectionListener);
+
+        Action copyAction = new AbstractAction(SharedLocale.tr("context.copy")) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                copy();
+            }
+        };
+        Action selectAllAction = new AbstractAction(SharedLocale.tr("context.selectAll")) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                selectAll();
+            }
+        };
+
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+        getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_C, shortcut), "copy");
+        getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_A, shortcut), "selectAll");
+        getActionMap().put("copy", copyAction);
+        getActionMap().put("selectAll", selectAllAction);
+
+        JPopupMenu popupMenu = new JPopupMenu();
+        popupMenu.add(copyAction);
+        popupMenu.addSeparator();
+        popupMenu.add(selectAllAction);
+        setComponentPopupMenu(popupMenu);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        timer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        timer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Select every line.
+     */
+    public void selectAll() {
+        selectionAnchor = buffer.getStartIndex();
+        selectionLead = buffer.getEndIndex() - 1;
+        repaint();
+    }
+
+    /**
+     * Copy the selected lines, or every line if none are selected, to the clipboard.
+     */
+    public void copy() {
+        String text;
+        if (selectionAnchor >= 0) {
+            List<LogBuffer.Line> lines = new ArrayList<LogBuffer.Line>();
+            buffer.getLines(Math.min(selectionAnchor, selectionLead), Math.max(selectionAnchor, selectionLead) + 1, lines);
+            StringBuilder builder = new StringBuilder();
+            for (LogBuffer.Line line : lines) {
+                builder.append(line.getText()).append("\n");
+            }
+            text = builder.toString();
+        } else {
+            text = buffer.getText();
+        }
+
+        StringSelection selection = new StringSelection(text);
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, selection);
+    }
+
+    private void update() {
+        long version = buffer.getVersion();
+        if (version == seenVersion) {
+            return;
+        }
+        seenVersion = version;
+
+        // Only follow new lines if the user hasn't scrolled up
+        Rectangle visible = getVisibleRect();
+        boolean following = visible.y + visible.height >= getHeight() - getLineHeight();
+
+        viewStart = buffer.getStartIndex();
+        viewEnd = buffer.getEndIndex();
+        if (viewEnd == viewStart) {
+            maxLineWidth = 0;
+            selectionAnchor = selectionLead = -1;
+        }
+        measureNewLines();
+
+        revalidate();
+        Container parent = getParent();
+        if (parent != null) {
+            parent.validate();
+        }
+
+        if (following) {
+            scrollRectToVisible(new Rectangle(0, getHeight() - 1, 1, 1));
+        }
+
+        repaint();
+    }
+
+    private void measureNewLines() {
+        // The last line may have been partial when last measured
+        long from = Math.max(viewStart, measuredEnd - 1);
+        List<LogBuffer.Line> lines = new ArrayList<LogBuffer.Line>();
+        buffer.getLines(from, viewEnd, lines);
+
+        FontMetrics metrics = getFontMetrics(getFont());
+        for (LogBuffer.Line line : lines) {
+            maxLineWidth = Math.max(maxLineWidth, metrics.stringWidth(line.getText()));
+        }
+        measuredEnd = viewEnd;
+    }
+
+    private int getLineHeight() {
+        return getFontMetrics(getFont()).getHeight();
+    }
+
+    private long getLineAt(int y) {
+        long index = viewStart + Math.max(0, y) / getLineHeight();
+        return Math.max(viewStart, Math.min(index, viewEnd - 1));
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        Insets insets = getInsets();
+        return new Dimension(
+                maxLineWidth + insets.left + insets.right,
+                (int) (viewEnd - viewStart) * getLineHeight() + insets.top + insets.bottom);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        g.setFont(getFont());
+
+        FontMetrics metrics = g.getFontMetrics();
+        Insets insets = getInsets();
+        int lineHeight = metrics.getHeight();
+        int firstRow = Math.max(0, (clip.y - insets.top) / lineHeight);
+        int lastRow = (clip.y + clip.height - insets.top) / lineHeight + 1;
+
+        paintLines.clear();
+        long first = buffer.getLines(viewStart + firstRow, Math.min(viewStart + lastRow, viewEnd), paintLines);
+        long selectionStart = Math.min(selectionAnchor, selectionLead);
+        long selectionEnd = Math.max(selectionAnchor, selectionLead);
+        Color selectionColor = UIManager.getColor("TextArea.selectionBackground");
+
+        for (int i = 0; i < paintLines.size(); i++) {
+            long index = first + i;
+            int y = insets.top + (int) (index - viewStart) * lineHeight;
+
+            if (selectionAnchor >= 0 && index >= selectionStart && index <= selectionEnd) {
+                g.setColor(selectionColor);
+                g.fillRect(clip.x, y, clip.width, lineHeight);
+            }
+
+            LogBuffer.Line line = paintLines.get(i);
+            g.setColor(getColor(line.getAttributes()));
+            g.drawString(line.getText(), insets.left, y + metrics.getAscent());
+        }
+
+        paintLines.clear();
+    }
+
+    private Color getColor(AttributeSet attributes) {
+        if (colorEnabled && attributes != null && attributes.isDefined(StyleConstants.Foreground)) {
+            return StyleConstants.getForeground(attributes);
+        }
+        return getForeground();
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? getLineHeight() : 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.VERTICAL) {
+            return Math.max(getLineHeight(), visibleRect.height - getLineHeight());
+        } else {
+            return visibleRect.width;
+        }
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+}
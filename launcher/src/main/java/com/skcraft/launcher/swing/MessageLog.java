@@ -6,16 +6,16 @@
 
 package com.skcraft.launcher.swing;
 
-import com.skcraft.launcher.util.LimitLinesDocumentListener;
 import com.skcraft.launcher.util.SimpleLogFormatter;
+import lombok.Getter;
 
 import javax.swing.*;
-import javax.swing.text.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
 import java.awt.*;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.PrintWriter;
+import java.io.*;
+import java.nio.CharBuffer;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -25,6 +25,10 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
 
 /**
  * A simple message log.
+ * <p>
+ * Messages go into a fixed size {@link LogBuffer} straight from the thread
+ * that logs them, and a {@link LogView} shows the buffer, so logging never
+ * waits on the event dispatch thread and memory use stays bounded.
  */
 public class MessageLog extends JPanel {
 
@@ -34,15 +38,15 @@ public class MessageLog extends JPanel {
     protected final SimpleAttributeSet errorAttributes;
     protected final SimpleAttributeSet infoAttributes;
     protected final SimpleAttributeSet debugAttributes;
-    private final int numLines;
     private final boolean colorEnabled;
-    protected JTextComponent textComponent;
-    protected Document document;
+    @Getter
+    private final LogBuffer buffer;
+    protected LogView logView;
     private Handler loggerHandler;
 
     public MessageLog(int numLines, boolean colorEnabled) {
-        this.numLines = numLines;
         this.colorEnabled = colorEnabled;
+        this.buffer = new LogBuffer(numLines);
 
         this.highlightedAttributes = new SimpleAttributeSet();
         StyleConstants.setForeground(highlightedAttributes, new Color(0xFF7F00));
@@ -58,78 +62,38 @@ public class MessageLog extends JPanel {
     }
 
     private void initComponents() {
-        if (colorEnabled) {
-            JTextPane text = new JTextPane() {
-                @Override
-                public boolean getScrollableTracksViewportWidth() {
-                    return true;
-                }
-            };
-            this.textComponent = text;
-        } else {
-            JTextArea text = new JTextArea();
-            this.textComponent = text;
-            text.setLineWrap(true);
-            text.setWrapStyleWord(true);
-        }
-
-        textComponent.setFont(new JLabel().getFont());
-        textComponent.setEditable(false);
-        textComponent.setComponentPopupMenu(TextFieldPopupMenu.INSTANCE);
-        DefaultCaret caret = (DefaultCaret) textComponent.getCaret();
-        caret.setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
-        document = textComponent.getDocument();
-        document.addDocumentListener(new LimitLinesDocumentListener(numLines, true));
+        logView = new LogView(buffer, colorEnabled);
 
-        JScrollPane scrollText = new JScrollPane(textComponent);
+        JScrollPane scrollText = new JScrollPane(logView);
         scrollText.setBorder(null);
         scrollText.setVerticalScrollBarPolicy(
                 ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
         scrollText.setHorizontalScrollBarPolicy(
-                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 
         add(scrollText, BorderLayout.CENTER);
     }
 
     public String getPastableText() {
-        String text = textComponent.getText().replaceAll("[\r\n]+", "\n");
+        String text = buffer.getText();
         text = text.replaceAll("Session ID is [A-Fa-f0-9]+", "Session ID is [redacted]");
         return text;
     }
 
     public void clear() {
-        textComponent.setText("");
+        buffer.clear();
     }
 
     /**
      * Log a message given the {@link javax.swing.text.AttributeSet}.
      *
+     * <p>This may be called from any thread.</p>
+     *
      * @param line       line
      * @param attributes attribute set, or null for none
      */
     public void log(final String line, AttributeSet attributes) {
-        final Document d = document;
-        final JTextComponent t = textComponent;
-        if (colorEnabled) {
-            if (line.startsWith("(!!)")) {
-                attributes = highlightedAttributes;
-            }
-        }
-        final AttributeSet a = attributes;
-
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    int offset = d.getLength();
-                    d.insertString(offset, line,
-                            (a != null && colorEnabled) ? a : defaultAttributes);
-                    t.setCaretPosition(d.getLength());
-                } catch (BadLocationException ble) {
-
-                }
-            }
-        });
+        log((CharSequence) line, attributes);
     }
 
     /**
@@ -170,7 +134,7 @@ public class MessageLog extends JPanel {
      * @param from stream to read
      */
     public void consume(InputStream from) {
-        consume(from, getOutputStream());
+        consume(from, (AttributeSet) null);
     }
 
     /**
@@ -181,7 +145,9 @@ public class MessageLog extends JPanel {
      * @param color color to use
      */
     public void consume(InputStream from, Color color) {
-        consume(from, getOutputStream(color));
+        SimpleAttributeSet attributes = new SimpleAttributeSet();
+        StyleConstants.setForeground(attributes, color);
+        consume(from, attributes);
     }
 
     /**
@@ -191,35 +157,25 @@ public class MessageLog extends JPanel {
      * @param from       stream to read
      * @param attributes attributes
      */
-    public void consume(InputStream from, AttributeSet attributes) {
-        consume(from, getOutputStream(attributes));
-    }
-
-    /**
-     * Internal method to consume a stream.
-     *
-     * @param from         stream to consume
-     * @param outputStream console stream to write to
-     */
-    private void consume(InputStream from, ConsoleOutputStream outputStream) {
-        final InputStream in = from;
-        final PrintWriter out = new PrintWriter(outputStream, true);
+    public void consume(InputStream from, final AttributeSet attributes) {
+        final Reader in = new InputStreamReader(from);
         Thread thread = new Thread(new Runnable() {
             @Override
             public void run() {
-                byte[] buffer = new byte[1024];
+                // Decode with a reader so that characters split across reads stay whole
+                char[] data = new char[8192];
+                CharBuffer chars = CharBuffer.wrap(data);
                 try {
                     int len;
-                    while ((len = in.read(buffer)) != -1) {
-                        String s = new String(buffer, 0, len);
-                        System.out.print(s);
-                        out.append(s);
-                        out.flush();
+                    while ((len = in.read(data)) != -1) {
+                        System.out.print(new String(data, 0, len));
+                        chars.limit(len);
+                        log(chars, attributes);
+                        chars.clear();
                     }
                 } catch (IOException e) {
                 } finally {
                     closeQuietly(in);
-                    closeQuietly(out);
                 }
             }
         });
@@ -227,6 +183,16 @@ public class MessageLog extends JPanel {
         thread.start();
     }
 
+    private void log(CharSequence text, AttributeSet attributes) {
+        if (colorEnabled) {
+            if (text.length() >= 4 && text.subSequence(0, 4).toString().equals("(!!)")) {
+                attributes = highlightedAttributes;
+            }
+        }
+
+        buffer.append(text, (attributes != null && colorEnabled) ? attributes : defaultAttributes);
+    }
+
     /**
      * Register a global logger listener.
      */
@@ -6,6 +6,9 @@
 
 package com.skcraft.launcher.update;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -21,7 +24,9 @@ import com.skcraft.launcher.model.loader.LocalLoader;
 import com.skcraft.launcher.model.minecraft.*;
 import com.skcraft.launcher.model.modpack.DownloadableFile;
 import com.skcraft.launcher.model.modpack.Feature;
+import com.skcraft.launcher.model.modpack.FileInstall;
 import com.skcraft.launcher.model.modpack.Manifest;
+import com.skcraft.launcher.model.modpack.ManifestDelta;
 import com.skcraft.launcher.model.modpack.ManifestEntry;
 import com.skcraft.launcher.persistence.Persistence;
 import com.skcraft.launcher.util.Environment;
@@ -41,7 +46,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import static com.skcraft.launcher.LauncherUtils.checkInterrupted;
@@ -64,6 +68,13 @@ public abstract class BaseUpdater {
     private static final long JAR_SIZE_ESTIMATE = 5 * 1024 * 1024;
     private static final long LIBRARY_SIZE_ESTIMATE = 3 * 1024 * 1024;
 
+    /**
+     * The number of missing assets above which an asset pack is used,
+     * which is usually only reached on the first install of a version.
+     */
+    private static final int ASSET_PACK_THRESHOLD = 500;
+
+    private final ObjectMapper mapper = new ObjectMapper();
     private final Launcher launcher;
     private final Environment environment = Environment.getInstance();
     private final List<Runnable> executeOnCompletion = new ArrayList<Runnable>();
@@ -92,6 +103,7 @@ public abstract class BaseUpdater {
         final File logPath = new File(instance.getDir(), "install_log.json");
         final File cachePath = new File(instance.getDir(), "update_cache.json");
         final File featuresPath = new File(instance.getDir(), "features.json");
+        final File indexPath = new File(instance.getDir(), "file_index.json");
 
         // Make sure the temp dir exists
         installer.getTempDir().mkdirs();
@@ -101,14 +113,9 @@ public abstract class BaseUpdater {
         currentLog.setBaseDir(contentDir);
         final UpdateCache updateCache = Persistence.read(cachePath, UpdateCache.class);
         final FeatureCache featuresCache = Persistence.read(featuresPath, FeatureCache.class);
+        final FileIndex fileIndex = Persistence.read(indexPath, FileIndex.class);
 
-        Manifest manifest = HttpRequest
-                .get(instance.getManifestURL())
-                .execute()
-                .expectResponseCode(200)
-                .returnContent()
-                .saveContent(instance.getManifestPath())
-                .asJson(Manifest.class);
+        Manifest manifest = readManifest(instance);
 
         if (manifest.getMinimumVersion() > Launcher.PROTOCOL_VERSION) {
             throw new LauncherException("Update required", SharedLocale.tr("errors.updateRequiredError"));
@@ -161,9 +168,14 @@ public abstract class BaseUpdater {
             loaders.put(entry.getKey(), new LocalLoader(entry.getValue(), localFilesMap));
         }
 
-        InstallExtras extras = new InstallExtras(contentDir, loaders);
+        InstallExtras extras = new InstallExtras(contentDir, loaders, fileIndex);
+        final Set<String> indexKeys = new HashSet<String>();
         for (ManifestEntry entry : manifest.getTasks()) {
             entry.install(installer, currentLog, updateCache, extras);
+
+            if (entry instanceof FileInstall && (entry.getWhen() == null || entry.getWhen().matches())) {
+                indexKeys.add(((FileInstall) entry).getIndexKey());
+            }
         }
 
         executeOnCompletion.add(new Runnable() {
@@ -180,12 +192,82 @@ public abstract class BaseUpdater {
                 writeDataFile(logPath, currentLog);
                 writeDataFile(cachePath, updateCache);
                 writeDataFile(featuresPath, featuresCache);
+
+                // Forget files that are no longer part of the pack
+                fileIndex.retainAll(indexKeys);
+                writeDataFile(indexPath, fileIndex);
             }
         });
 
         return manifest;
     }
 
+    /**
+     * Get the package manifest of the version being installed, by applying
+     * the delta published alongside it to the installed manifest if the
+     * delta is from the installed version to this one, or otherwise by
+     * downloading the whole manifest.
+     *
+     * @param instance the instance
+     * @return the manifest
+     * @throws IOException          thrown on I/O error
+     * @throws InterruptedException thrown on interruption
+     */
+    private Manifest readManifest(Instance instance) throws IOException, InterruptedException {
+        ObjectNode updated = readManifestFromDelta(instance);
+        if (updated != null) {
+            mapper.writeValue(instance.getManifestPath(), updated);
+            return mapper.treeToValue(updated, Manifest.class);
+        }
+
+        return HttpRequest
+                .get(instance.getManifestURL())
+                .execute()
+                .expectResponseCode(200)
+                .returnContent()
+                .saveContent(instance.getManifestPath())
+                .asJson(Manifest.class);
+    }
+
+    private ObjectNode readManifestFromDelta(Instance instance) throws InterruptedException {
+        File manifestPath = instance.getManifestPath();
+        if (!manifestPath.exists() || instance.getVersion() == null) {
+            return null;
+        }
+
+        try {
+            JsonNode installed = mapper.readTree(manifestPath);
+            if (!(installed instanceof ObjectNode)) {
+                return null;
+            }
+
+            URL url = ManifestDelta.getDeltaUrl(instance.getManifestURL());
+            ManifestDelta delta = HttpRequest
+                    .get(url)
+                    .execute()
+                    .expectResponseCode(200)
+                    .returnContent()
+                    .asJson(ManifestDelta.class);
+
+            // Instance.getVersion() is the version that the package list says to update to
+            if (!instance.getVersion().equals(delta.getVersion()) ||
+                    !installed.path("version").asText("").equals(delta.getBaseVersion())) {
+                log.info("The manifest delta at " + url + " is from " + delta.getBaseVersion() +
+                        " to " + delta.getVersion() + ", so the full manifest is needed");
+                return null;
+            }
+
+            ObjectNode updated = delta.apply((ObjectNode) installed);
+            log.info("Updated the manifest from " + delta.getBaseVersion() + " to " + delta.getVersion() +
+                    " with a delta of " + delta.getFiles().size() + " changed and " +
+                    delta.getRemoved().size() + " removed file(s)");
+            return updated;
+        } catch (IOException | IllegalArgumentException e) {
+            log.info("No usable manifest delta for " + instance.getName() + ", so the full manifest is needed: " + e);
+            return null;
+        }
+    }
+
     protected void installJar(@NonNull Installer installer,
                               @NonNull VersionManifest.Artifact artifact,
                               @NonNull File jarFile,
@@ -195,11 +277,9 @@ public abstract class BaseUpdater {
             long size = artifact.getSize();
             if (size <= 0) size = JAR_SIZE_ESTIMATE;
 
-            File tempFile = installer.getDownloader().download(url, "", size, jarFile.getName());
+            File tempFile = installer.getDownloader().download(
+                    Collections.singletonList(url), "", artifact.getHash(), size, jarFile.getName());
             installer.queue(new FileMover(tempFile, jarFile));
-            if (artifact.getHash() != null) {
-                installer.queue(new FileVerify(jarFile, jarFile.getName(), artifact.getHash()));
-            }
             log.info("Installing " + jarFile.getName() + " from " + url);
         }
     }
@@ -208,6 +288,25 @@ public abstract class BaseUpdater {
                                  @NonNull VersionManifest versionManifest,
                                  @NonNull URL indexUrl,
                                  @NonNull List<URL> sources) throws IOException, InterruptedException {
+        installAssets(installer, versionManifest, indexUrl, sources, null);
+    }
+
+    /**
+     * Queue the download of the assets of a version that are not yet installed.
+     *
+     * @param installer       the installer
+     * @param versionManifest the version manifest
+     * @param indexUrl        the URL of the asset index
+     * @param sources         the URLs to download individual objects from
+     * @param pack            the asset pack to unpack objects from first when many are missing, or null
+     * @throws IOException          thrown on I/O error
+     * @throws InterruptedException thrown on interruption
+     */
+    protected void installAssets(@NonNull Installer installer,
+                                 @NonNull VersionManifest versionManifest,
+                                 @NonNull URL indexUrl,
+                                 @NonNull List<URL> sources,
+                                 AssetPack pack) throws IOException, InterruptedException {
         AssetsRoot assetsRoot = launcher.getAssets();
 
         AssetsIndex index = HttpRequest
@@ -218,11 +317,26 @@ public abstract class BaseUpdater {
                 .saveContent(assetsRoot.getIndexPath(versionManifest))
                 .asJson(AssetsIndex.class);
 
-        // Keep track of duplicates
-        Set<String> downloading = ConcurrentHashMap.newKeySet();
+        // Collect missing objects, keyed by hash to skip duplicates
+        Map<String, Map.Entry<String, Asset>> missing = new HashMap<>();
+        for (Map.Entry<String, Asset> entry : index.getObjects().entrySet()) {
+            String hash = entry.getValue().getHash();
+            if (!missing.containsKey(hash) && !assetsRoot.getObjectPath(entry.getValue()).exists()) {
+                missing.put(hash, entry);
+            }
+        }
+
+        if (pack != null && missing.size() >= ASSET_PACK_THRESHOLD) {
+            Map<String, Asset> wanted = new HashMap<>();
+            for (Map.Entry<String, Map.Entry<String, Asset>> entry : missing.entrySet()) {
+                wanted.put(entry.getKey(), entry.getValue().getValue());
+            }
+
+            missing.keySet().removeAll(pack.extract(assetsRoot, versionManifest.getAssetId(), wanted));
+        }
 
         // Use parallel stream to speed up processing of assets
-        index.getObjects().entrySet().parallelStream().forEach(entry -> {
+        missing.values().parallelStream().forEach(entry -> {
             try {
                 checkInterrupted();
 
@@ -230,20 +344,18 @@ public abstract class BaseUpdater {
                 String path = String.format("%s/%s", hash.substring(0, 2), hash);
                 File targetFile = assetsRoot.getObjectPath(entry.getValue());
 
-                if (!targetFile.exists() && downloading.add(path)) {
-                    List<URL> urls = new ArrayList<>();
-                    for (URL sourceUrl : sources) {
-                        try {
-                            urls.add(concat(sourceUrl, path));
-                        } catch (MalformedURLException e) {
-                            log.log(Level.WARNING, "Bad source URL for asset: " + sourceUrl, e);
-                        }
+                List<URL> urls = new ArrayList<>();
+                for (URL sourceUrl : sources) {
+                    try {
+                        urls.add(concat(sourceUrl, path));
+                    } catch (MalformedURLException e) {
+                        log.log(Level.WARNING, "Bad source URL for asset: " + sourceUrl, e);
                     }
-
-                    File tempFile = installer.getDownloader().download(urls, "", entry.getValue().getSize(), entry.getKey());
-                    installer.queue(new FileMover(tempFile, targetFile));
-                    log.info("Fetching " + path + " from " + urls);
                 }
+
+                File tempFile = installer.getDownloader().download(urls, "", entry.getValue().getSize(), entry.getKey());
+                installer.queue(new FileMover(tempFile, targetFile));
+                log.info("Fetching " + path + " from " + urls);
             } catch (InterruptedException e) {
                 log.log(Level.SEVERE, "Failed to download asset: " + entry.getKey(), e);
             }
@@ -285,12 +397,10 @@ public abstract class BaseUpdater {
                             }
                         }
 
-                        File tempFile = installer.getDownloader().download(urls, "", size, library.getName() + ".jar");
+                        File tempFile = installer.getDownloader().download(
+                                urls, "", artifact.getSha1(), size, library.getName() + ".jar");
                         log.info("Fetching " + path + " from " + urls);
                         installer.queue(new FileMover(tempFile, targetFile));
-                        if (artifact.getSha1() != null) {
-                            installer.queue(new FileVerify(targetFile, library.getName(), artifact.getSha1()));
-                        }
                     }
                 }
             } catch (InterruptedException e) {
@@ -7,19 +7,24 @@
 package com.skcraft.launcher.update;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
 import com.skcraft.concurrency.DefaultProgress;
-import com.skcraft.concurrency.ProgressFilter;
 import com.skcraft.concurrency.ProgressObservable;
 import com.skcraft.launcher.Instance;
 import com.skcraft.launcher.Launcher;
 import com.skcraft.launcher.LauncherException;
+import com.skcraft.launcher.install.AssetPack;
 import com.skcraft.launcher.install.Installer;
+import com.skcraft.launcher.launch.LaunchPlanner;
 import com.skcraft.launcher.model.minecraft.ReleaseList;
 import com.skcraft.launcher.model.minecraft.Version;
 import com.skcraft.launcher.model.minecraft.VersionManifest;
 import com.skcraft.launcher.model.modpack.Manifest;
 import com.skcraft.launcher.persistence.Persistence;
+import com.skcraft.launcher.util.Environment;
+import com.skcraft.launcher.util.HttpConnections;
 import com.skcraft.launcher.util.HttpRequest;
+import com.skcraft.launcher.util.Metrics;
 import com.skcraft.launcher.util.SharedLocale;
 import lombok.Getter;
 import lombok.NonNull;
@@ -46,6 +51,7 @@ public class Updater extends BaseUpdater implements Callable<Instance>, Progress
     private final Instance instance;
     private final List<URL> librarySources = new ArrayList<URL>();
     private final List<URL> assetsSources = new ArrayList<URL>();
+    private final AssetPack assetPack;
     @Getter
     @Setter
     private boolean online;
@@ -54,12 +60,15 @@ public class Updater extends BaseUpdater implements Callable<Instance>, Progress
     public Updater(@NonNull Launcher launcher, @NonNull Instance instance) {
         super(launcher);
 
-        this.installer = new Installer(launcher.getInstallerDir());
+        this.installer = new Installer(launcher.getInstallerDir(), launcher.getObjectStore());
         this.launcher = launcher;
         this.instance = instance;
 
         librarySources.add(launcher.propUrl("librariesSource"));
         assetsSources.add(launcher.propUrl("assetsSource"));
+
+        String assetPackSource = launcher.prop("assetPackSource");
+        assetPack = !Strings.isNullOrEmpty(assetPackSource) ? new AssetPack(url(assetPackSource)) : null;
     }
 
     private static VersionManifest fetchVersionManifest(URL url, Manifest manifest) throws IOException, InterruptedException {
@@ -153,6 +162,21 @@ public class Updater extends BaseUpdater implements Callable<Instance>, Progress
      * @throws ExecutionException   thrown on execution error
      */
     protected void update(Instance instance) throws Exception {
+        Metrics metrics = new Metrics("update");
+        HttpConnections.Stats initialStats = HttpConnections.getStats();
+        installer.setMetrics(metrics);
+
+        try {
+            update(instance, metrics);
+        } finally {
+            HttpConnections.Stats stats = HttpConnections.getStats().since(initialStats);
+            metrics.count("http.requests", stats.getRequests());
+            metrics.count("http.handshakes", stats.getHandshakes());
+            metrics.write(getMetricsPath(instance));
+        }
+    }
+
+    private void update(Instance instance, Metrics metrics) throws Exception {
         // Mark this instance as local
         instance.setLocal(true);
         Persistence.commitAndForget(instance);
@@ -160,7 +184,10 @@ public class Updater extends BaseUpdater implements Callable<Instance>, Progress
         // Read manifest
         log.info("Reading package manifest...");
         progress = new DefaultProgress(-1, SharedLocale.tr("instanceUpdater.readingManifest"));
-        Manifest manifest = installPackage(installer, instance);
+        Manifest manifest;
+        try (Metrics.Span span = metrics.start("installPackage")) {
+            manifest = installPackage(installer, instance);
+        }
 
         // Update instance from manifest
         manifest.update(instance);
@@ -168,7 +195,10 @@ public class Updater extends BaseUpdater implements Callable<Instance>, Progress
         // Read version manifest
         log.info("Reading version manifest...");
         progress = new DefaultProgress(-1, SharedLocale.tr("instanceUpdater.readingVersion"));
-        VersionManifest version = readVersionManifest(manifest);
+        VersionManifest version;
+        try (Metrics.Span span = metrics.start("readVersionManifest")) {
+            version = readVersionManifest(manifest);
+        }
 
         progress = new DefaultProgress(-1, SharedLocale.tr("instanceUpdater.buildingDownloadList"));
 
@@ -189,25 +219,31 @@ public class Updater extends BaseUpdater implements Callable<Instance>, Progress
         }
 
         progress = new DefaultProgress(-1, SharedLocale.tr("instanceUpdater.collectingLibraries"));
-        installLibraries(installer, manifest, launcher.getLibrariesDir(), librarySources);
+        try (Metrics.Span span = metrics.start("collectLibraries")) {
+            installLibraries(installer, manifest, launcher.getLibrariesDir(), librarySources);
+        }
 
         // Download assets
         log.info("Enumerating assets to download...");
-        progress = new DefaultProgress(-1, SharedLocale.tr("instanceUpdater.collectingAssets"));
-        installAssets(installer, version, url(version.getAssetIndex().getUrl()), assetsSources);
-
-        log.info("Executing download phase...");
-        progress = ProgressFilter.between(installer.getDownloader(), 0, 0.98);
-        installer.download();
+        progress = assetPack != null ? assetPack : new DefaultProgress(-1, SharedLocale.tr("instanceUpdater.collectingAssets"));
+        try (Metrics.Span span = metrics.start("collectAssets")) {
+            installAssets(installer, version, url(version.getAssetIndex().getUrl()), assetsSources, assetPack);
+        }
 
-        log.info("Executing install phase...");
-        progress = ProgressFilter.between(installer, 0.98, 1);
-        installer.execute(launcher);
+        log.info("Executing download and install phase...");
+        progress = installer;
+        try (Metrics.Span span = metrics.start("downloadAndInstall")) {
+            installer.downloadAndExecute(launcher);
+        }
 
-        installer.executeLate(launcher);
+        try (Metrics.Span span = metrics.start("installLate")) {
+            installer.executeLate(launcher);
+        }
 
         log.info("Completing...");
-        complete();
+        try (Metrics.Span span = metrics.start("complete")) {
+            complete();
+        }
 
         // Update the instance's information
         log.info("Writing instance information...");
@@ -217,10 +253,31 @@ public class Updater extends BaseUpdater implements Callable<Instance>, Progress
         instance.setLocal(true);
         Persistence.commitAndForget(instance);
 
+        // Work out the launch command now, rather than at launch
+        log.info("Creating launch plan...");
+        LaunchPlanner planner = new LaunchPlanner(launcher, instance, Environment.getInstance());
+        planner.setMetrics(metrics);
+        progress = planner;
+        try {
+            planner.getPlan();
+        } catch (IOException | LauncherException e) {
+            log.log(Level.WARNING, "Failed to create the launch plan, so it will be created at launch", e);
+        }
+
         log.log(Level.INFO, instance.getName() +
                 " has been updated to version " + manifest.getVersion() + ".");
     }
 
+    /**
+     * Get the path of the timings of the last update of an instance.
+     *
+     * @param instance the instance
+     * @return the path
+     */
+    public static File getMetricsPath(Instance instance) {
+        return new File(instance.getDir(), "update_metrics.json");
+    }
+
     @Override
     public double getProgress() {
         return progress.getProgress();
@@ -0,0 +1,218 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.util;
+
+import lombok.Data;
+import lombok.extern.java.Log;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Manages the reuse of HTTP connections made through {@link HttpRequest}.
+ * <p>
+ * {@link java.net.HttpURLConnection} keeps idle connections alive and hands
+ * them out again, but only if the response body was read to the end and the
+ * connection was not disconnected. This class makes sure of that and counts
+ * how many secure requests could reuse a connection instead of going through
+ * a new TLS handshake.
+ */
+@Log
+public final class HttpConnections {
+
+    /**
+     * The number of idle connections to keep per host, which should be
+     * at least the number of downloads that can run at once.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+
+    /**
+     * If fewer bytes than this remain unread when a request is closed,
+     * they are read so that the connection can be reused.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong handshakes = new AtomicLong();
+    private static final SSLSocketFactory socketFactory =
+            new CountingSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+
+    private HttpConnections() {
+    }
+
+    /**
+     * Configure the connection cache of the JVM. This has to be called before
+     * the first HTTP connection is made.
+     */
+    public static void configure() {
+        System.setProperty("http.keepAlive", "true");
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        }
+    }
+
+    /**
+     * Prepare a connection before it is connected.
+     *
+     * @param conn the connection
+     */
+    static void prepare(HttpURLConnection conn) {
+        if (conn instanceof HttpsURLConnection) {
+            // Connections are only reused with the same socket factory, so always use the same one
+            ((HttpsURLConnection) conn).setSSLSocketFactory(socketFactory);
+            requests.incrementAndGet();
+        }
+    }
+
+    /**
+     * Release a connection so that it can be used again for another request.
+     *
+     * @param conn   the connection
+     * @param stream the response body stream, or null if there is none
+     */
+    static void release(HttpURLConnection conn, InputStream stream) {
+        if (stream == null) {
+            conn.disconnect();
+            return;
+        }
+
+        try {
+            byte[] buffer = new byte[8192];
+            long drained = 0;
+            int len;
+            while (drained < MAX_DRAIN_BYTES && (len = stream.read(buffer)) >= 0) {
+                drained += len;
+            }
+
+            if (drained < MAX_DRAIN_BYTES) {
+                stream.close();
+                return;
+            }
+        } catch (IOException e) {
+            log.log(Level.FINE, "Failed to drain response from " + conn.getURL(), e);
+        }
+
+        // Too much left to read, so it is cheaper to open a new connection
+        conn.disconnect();
+    }
+
+    /**
+     * Release a connection whose response body was not opened.
+     *
+     * @param conn the connection
+     */
+    static void discard(HttpURLConnection conn) {
+        try {
+            release(conn, conn.getInputStream());
+        } catch (IOException e) {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Get the current connection statistics.
+     *
+     * @return the statistics
+     */
+    public static Stats getStats() {
+        return new Stats(requests.get(), handshakes.get());
+    }
+
+    @Data
+    public static class Stats {
+        private final long requests;
+        private final long handshakes;
+
+        /**
+         * Get the statistics for the requests made since an earlier snapshot.
+         *
+         * @param earlier the earlier snapshot
+         * @return the difference
+         */
+        public Stats since(Stats earlier) {
+            return new Stats(requests - earlier.requests, handshakes - earlier.handshakes);
+        }
+
+        /**
+         * Get the percentage of requests that reused a connection.
+         *
+         * @return the percentage
+         */
+        public int getReusePercent() {
+            if (requests <= 0) {
+                return 0;
+            }
+            return (int) Math.max(0, Math.round(100.0 * (requests - handshakes) / requests));
+        }
+    }
+
+    /**
+     * Counts every new secure connection, each of which performs a handshake.
+     */
+    private static class CountingSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory delegate;
+
+        private CountingSocketFactory(SSLSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            handshakes.incrementAndGet();
+            return delegate.createSocket();
+        }
+
+        @Override
+        public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+            handshakes.incrementAndGet();
+            return delegate.createSocket(s, host, port, autoClose);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            handshakes.incrementAndGet();
+            return delegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            handshakes.incrementAndGet();
+            return delegate.createSocket(host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            handshakes.incrementAndGet();
+            return delegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            handshakes.incrementAndGet();
+            return delegate.createSocket(address, port, localAddress, localPort);
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ package com.skcraft.launcher.util;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hasher;
 import com.skcraft.concurrency.ProgressObservable;
 import lombok.Data;
 import lombok.Getter;
@@ -26,6 +27,9 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
 /**
  * A simple fluent interface for performing HTTP requests that uses
  * {@link java.net.HttpURLConnection} or {@link javax.net.ssl.HttpsURLConnection}.
+ * <p>
+ * Connections are kept alive and reused between requests as managed
+ * by {@link HttpConnections}.
  */
 @Log
 public class HttpRequest implements Closeable, ProgressObservable {
@@ -43,10 +47,11 @@ public class HttpRequest implements Closeable, ProgressObservable {
     private HttpURLConnection conn;
     private InputStream inputStream;
     private int redirectCount;
+    private boolean released;
 
     private PartialDownloadInfo resumeInfo = null;
-    private long contentLength = -1;
-    private long readBytes = 0;
+    private volatile long contentLength = -1;
+    private volatile long readBytes = 0;
 
     /**
      * Create a new HTTP request.
@@ -184,8 +189,7 @@ public class HttpRequest implements Closeable, ProgressObservable {
 
             conn = this.runRequest(url);
 
-            inputStream = conn.getResponseCode() == HttpURLConnection.HTTP_OK ?
-                    conn.getInputStream() : conn.getErrorStream();
+            inputStream = isSuccessCode() ? conn.getInputStream() : conn.getErrorStream();
 
             successful = true;
         } finally {
@@ -203,6 +207,7 @@ public class HttpRequest implements Closeable, ProgressObservable {
         }
 
         HttpURLConnection conn = (HttpURLConnection) reformat(url).openConnection();
+        HttpConnections.prepare(conn);
         conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Java) SKMCLauncher");
         conn.setInstanceFollowRedirects(false);
 
@@ -246,6 +251,7 @@ public class HttpRequest implements Closeable, ProgressObservable {
                 String location = conn.getHeaderField("Location");
                 location = URLDecoder.decode(location, "UTF-8");
                 redirectCount++;
+                HttpConnections.discard(conn);
 
                 return runRequest(new URL(this.url, location));
             default:
@@ -337,6 +343,20 @@ public class HttpRequest implements Closeable, ProgressObservable {
         return conn.getResponseCode();
     }
 
+    /**
+     * Get a header of the response.
+     *
+     * @param name the name of the header
+     * @return the value, or null if the header was not sent
+     */
+    public String getResponseHeader(String name) {
+        if (conn == null) {
+            throw new IllegalArgumentException("No connection has been made");
+        }
+
+        return conn.getHeaderField(name);
+    }
+
     /**
      * Get the input stream.
      *
@@ -395,15 +415,43 @@ public class HttpRequest implements Closeable, ProgressObservable {
      * @throws InterruptedException on interruption
      */
     public HttpRequest saveContent(File file) throws IOException, InterruptedException {
+        return saveContent(file, null);
+    }
+
+    /**
+     * Save the result to a file while feeding the file's contents to the given
+     * hasher as they are received. If the request resumes a partial download,
+     * the part that is already on disk is hashed first.
+     *
+     * @param file   the file
+     * @param hasher the hasher, or null to not hash the content
+     * @return this object
+     * @throws java.io.IOException  on I/O error
+     * @throws InterruptedException on interruption
+     */
+    public HttpRequest saveContent(File file, Hasher hasher) throws IOException, InterruptedException {
         FileOutputStream fos = null;
         BufferedOutputStream bos = null;
         boolean shouldAppend = resumeInfo != null && getResponseCode() == 206;
 
+        if (shouldAppend && hasher != null) {
+            FileInputStream fis = new FileInputStream(file);
+            try {
+                byte[] data = new byte[READ_BUFFER_SIZE];
+                int len;
+                while ((len = fis.read(data)) >= 0) {
+                    hasher.putBytes(data, 0, len);
+                }
+            } finally {
+                closeQuietly(fis);
+            }
+        }
+
         try {
             fos = new FileOutputStream(file, shouldAppend);
             bos = new BufferedOutputStream(fos);
 
-            saveContent(bos);
+            saveContent(bos, hasher);
         } finally {
             closeQuietly(bos);
             closeQuietly(fos);
@@ -421,6 +469,10 @@ public class HttpRequest implements Closeable, ProgressObservable {
      * @throws InterruptedException on interruption
      */
     public HttpRequest saveContent(OutputStream out) throws IOException, InterruptedException {
+        return saveContent(out, null);
+    }
+
+    private HttpRequest saveContent(OutputStream out, Hasher hasher) throws IOException, InterruptedException {
         BufferedInputStream bis;
 
         try {
@@ -441,6 +493,9 @@ public class HttpRequest implements Closeable, ProgressObservable {
             int len = 0;
             while ((len = bis.read(data, 0, READ_BUFFER_SIZE)) >= 0) {
                 out.write(data, 0, len);
+                if (hasher != null) {
+                    hasher.putBytes(data, 0, len);
+                }
                 readBytes += len;
                 checkInterrupted();
             }
@@ -488,9 +543,18 @@ public class HttpRequest implements Closeable, ProgressObservable {
         return null;
     }
 
+    /**
+     * Finish the request. Any small remainder of the response is read so
+     * that the connection can be reused by another request.
+     *
+     * @throws IOException on I/O error
+     */
     @Override
     public void close() throws IOException {
-        if (conn != null) conn.disconnect();
+        if (conn != null && !released) {
+            released = true;
+            HttpConnections.release(conn, inputStream);
+        }
     }
 
     /**
@@ -1,56 +1,223 @@
 package com.skcraft.launcher.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Sends log messages to Loggly.
+ * <p>
+ * Messages are put on a bounded queue by the thread that logs them and sent
+ * in batches to the bulk endpoint by a background thread, so logging never
+ * waits on the network. If the queue is full, new messages are dropped and
+ * counted, and the count is reported with the next batch that is sent.
+ */
 public class LogglyHandler extends Handler {
+
+    private static final int MAX_QUEUED = 10000;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_BATCH_BYTES = 1024 * 1024;
+    private static final long BATCH_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    private static final int TIMEOUT = 10000;
+
     private final String logglyEndpoint;
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Thread sender;
+    private long reportedDropped;
+    private volatile boolean closed;
 
     public LogglyHandler(String logglyEndpoint) {
         this.logglyEndpoint = logglyEndpoint;
+
+        sender = new Thread(this::run, "Loggly Sender");
+        sender.setDaemon(true);
+        sender.start();
     }
 
     @Override
     public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+
+        if (queued.incrementAndGet() > MAX_QUEUED) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+
+        queue.offer(formatLogRecord(record));
+
+        if (queued.get() >= MAX_BATCH_SIZE) {
+            LockSupport.unpark(sender);
+        }
+    }
+
+    /**
+     * Ask the background thread to send the queued messages now, without
+     * waiting for them to be sent.
+     */
+    @Override
+    public void flush() {
+        LockSupport.unpark(sender);
+    }
+
+    /**
+     * Stop accepting messages and send the ones still queued, waiting a
+     * limited time for them to be sent.
+     */
+    @Override
+    public void close() throws SecurityException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        LockSupport.unpark(sender);
+        try {
+            sender.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the number of messages that were sent.
+     *
+     * @return the number of messages
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * Get the number of messages that were dropped because the queue was full.
+     *
+     * @return the number of messages
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Get the number of messages that could not be sent.
+     *
+     * @return the number of messages
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void run() {
+        List<String> batch = new ArrayList<>();
+
+        while (true) {
+            boolean stopping = closed;
+
+            while (takeBatch(batch)) {
+                send(batch);
+                batch.clear();
+            }
+
+            if (stopping) {
+                return;
+            }
+
+            if (queued.get() < MAX_BATCH_SIZE) {
+                LockSupport.parkNanos(this, BATCH_INTERVAL);
+            }
+        }
+    }
+
+    private boolean takeBatch(List<String> batch) {
+        long newlyDropped = dropped.get() - reportedDropped;
+        if (newlyDropped > 0) {
+            reportedDropped += newlyDropped;
+            batch.add("Loggly handler dropped " + newlyDropped + " log message(s) because its queue was full");
+        }
+
+        int bytes = 0;
+        String message;
+        while (batch.size() < MAX_BATCH_SIZE && bytes < MAX_BATCH_BYTES && (message = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(message);
+            bytes += message.length();
+        }
+
+        return !batch.isEmpty();
+    }
+
+    private void send(List<String> batch) {
+        HttpURLConnection connection = null;
         try {
+            // The bulk endpoint takes one event per line
+            StringBuilder body = new StringBuilder();
+            for (String message : batch) {
+                body.append(message).append('\n');
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+
             URL url = new URL(logglyEndpoint);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection = (HttpURLConnection) url.openConnection();
+            HttpConnections.prepare(connection);
             connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            connection.setRequestProperty("Content-Type", "text/plain; charset=UTF-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setFixedLengthStreamingMode(compressed.size());
             connection.setDoOutput(true);
 
-            String logMessage = formatLogRecord(record);
-
             try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = logMessage.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+                compressed.writeTo(os);
             }
 
             int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                sent.addAndGet(batch.size());
+            } else {
+                failed.addAndGet(batch.size());
                 System.err.println("Loggly log send failed with response code: " + responseCode);
             }
 
-            connection.disconnect();
+            HttpConnections.discard(connection);
         } catch (IOException e) {
-            e.printStackTrace();
+            // Don't log through java.util.logging, as that would come back to this handler
+            failed.addAndGet(batch.size());
+            System.err.println("Loggly log send failed: " + e);
+            if (connection != null) {
+                connection.disconnect();
+            }
         }
     }
 
-    @Override
-    public void flush() {
-    }
-
-    @Override
-    public void close() throws SecurityException {
-    }
-
     private String formatLogRecord(LogRecord record) {
-        return record.getMessage();
+        String message = record.getMessage();
+        if (message == null) {
+            return "";
+        }
+        return message.replace("\r\n", "\\n").replace('\r', ' ').replace("\n", "\\n");
     }
 }
@@ -0,0 +1,273 @@
+/*
+ * SK's Minecraft Launcher
+ * Copyright (C) 2010-2014 Albert Pham <http://www.sk89q.com> and contributors
+ * Please see LICENSE.txt for license information.
+ */
+
+package com.skcraft.launcher.util;
+
+import com.skcraft.launcher.persistence.Persistence;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.java.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Records where the time of one update or launch goes, as named phases,
+ * counters and latency histograms, and writes them out as a report.
+ * <p>
+ * Every method can be called from any thread, and recording a counter or
+ * histogram value never blocks.
+ */
+@Log
+public class Metrics {
+
+    /**
+     * Latencies are put in buckets that each cover twice the range of the
+     * one before, from under a millisecond to over a day.
+     */
+    private static final int BUCKET_COUNT = 28;
+
+    @Getter
+    private final String name;
+    private final long startTime = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<SpanRecord> spans = Collections.synchronizedList(new ArrayList<SpanRecord>());
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+    /**
+     * Create a new set of metrics.
+     *
+     * @param name the name of what is measured, such as "update"
+     */
+    public Metrics(@NonNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Start timing a phase. The phase ends when the returned span is closed.
+     *
+     * @param name the name of the phase
+     * @return the span
+     */
+    public Span start(@NonNull String name) {
+        return new Span(name);
+    }
+
+    /**
+     * Add one to a counter.
+     *
+     * @param name the name of the counter
+     */
+    public void count(String name) {
+        count(name, 1);
+    }
+
+    /**
+     * Add to a counter.
+     *
+     * @param name  the name of the counter
+     * @param delta the amount to add
+     */
+    public void count(@NonNull String name, long delta) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, k -> new LongAdder());
+        }
+        counter.add(delta);
+    }
+
+    /**
+     * Record a latency in a histogram.
+     *
+     * @param name  the name of the histogram
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(@NonNull String name, long nanos) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, k -> new Histogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Create a report of everything recorded so far.
+     *
+     * @return the report
+     */
+    public Report createReport() {
+        Report report = new Report();
+        report.setName(name);
+        report.setStarted(new Date(startTime));
+        report.setDuration(toMillis(System.nanoTime() - startNanos));
+
+        synchronized (spans) {
+            report.getSpans().addAll(spans);
+        }
+        Collections.sort(report.getSpans(), Comparator.comparingDouble(SpanRecord::getStart));
+
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            report.getCounters().put(entry.getKey(), entry.getValue().sum());
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            report.getHistograms().put(entry.getKey(), entry.getValue().summarize());
+        }
+
+        return report;
+    }
+
+    /**
+     * Write a report of everything recorded so far to a file, logging
+     * rather than throwing if it can't be written.
+     *
+     * @param file the file
+     */
+    public void write(File file) {
+        try {
+            Persistence.write(file, createReport());
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to write " + name + " metrics to " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * A phase that is being timed.
+     */
+    public class Span implements AutoCloseable {
+        private final String name;
+        private final long start = System.nanoTime();
+        private boolean closed;
+
+        private Span(String name) {
+            this.name = name;
+        }
+
+        /**
+         * End the phase.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            long end = System.nanoTime();
+            spans.add(new SpanRecord(name, Thread.currentThread().getName(),
+                    toMillis(start - startNanos), toMillis(end - start)));
+        }
+    }
+
+    /**
+     * Counts latencies into buckets, without keeping the latencies themselves.
+     */
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(millis));
+            buckets.incrementAndGet(bucket);
+            sum.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        private HistogramSummary summarize() {
+            long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+
+            HistogramSummary summary = new HistogramSummary();
+            summary.setCount(total);
+            summary.setTotal(toMillis(sum.sum()));
+            summary.setMean(total > 0 ? toMillis(sum.sum() / total) : 0);
+            summary.setMax(toMillis(max.get()));
+            summary.setP50(percentile(counts, total, 0.5));
+            summary.setP90(percentile(counts, total, 0.9));
+            summary.setP99(percentile(counts, total, 0.99));
+            return summary;
+        }
+
+        /**
+         * Get the upper bound, in milliseconds, of the bucket that holds the given percentile.
+         */
+        private double percentile(long[] counts, long total, double fraction) {
+            if (total == 0) {
+                return 0;
+            }
+
+            long target = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(1L << i, toMillis(max.get()));
+                }
+            }
+            return toMillis(max.get());
+        }
+    }
+
+    /**
+     * The report that is written out. Times are in milliseconds.
+     */
+    @Data
+    public static class Report {
+        private String name;
+        private Date started;
+        private double duration;
+        private List<SpanRecord> spans = new ArrayList<SpanRecord>();
+        private Map<String, Long> counters = new TreeMap<String, Long>();
+        private Map<String, HistogramSummary> histograms = new TreeMap<String, HistogramSummary>();
+    }
+
+    /**
+     * A phase that has ended. Times are in milliseconds, with the start
+     * measured from when the metrics were created.
+     */
+    @Data
+    public static class SpanRecord {
+        private final String name;
+        private final String thread;
+        private final double start;
+        private final double duration;
+    }
+
+    /**
+     * A summary of a histogram. Times are in milliseconds, and percentiles
+     * are the upper bounds of the buckets that they fall in.
+     */
+    @Data
+    public static class HistogramSummary {
+        private long count;
+        private double total;
+        private double mean;
+        private double max;
+        private double p50;
+        private double p90;
+        private double p99;
+    }
+
+}